@@ -0,0 +1,301 @@
+package lfd;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Integer codes of every attribute of a data set, spilled to a temporary file,
+ * so that a data set larger than the heap can be scanned again and again. A
+ * code is stored as code+1 in a variable length encoding of 7 bits per byte, -1
+ * (missing) takes one byte like every code below 127.
+ *
+ * The records are written in blocks of about blockBytes, a block holds the
+ * codes of its records attribute by attribute. One file and one write buffer
+ * serve any number of attributes, and a scan reads only the segments of the
+ * attributes it needs, with a read buffer per attribute sized from the heap.
+ *
+ * A scan reads the columns it needs in chunks of RowScan.CHUNK records. The
+ * chunks are counted into tables that are merged in the order of RowScan, so a
+ * floating point sum over the records comes out the same as over the columns
+ * in memory. Only the tables on the path of the current chunk and one chunk of
+ * codes are held in memory.
+ */
+class ColumnStore implements Closeable
+{
+    private File file;
+    private OutputStream out;
+    private FileChannel channel;//reads of the finished file
+    private long written;//bytes in the file
+    private long blockBytes;//codes held in memory before a block is written
+    private byte [][]block;//block[a]: codes of attribute a in the records not written yet
+    private int []blockSize;
+    private long buffered;//bytes in the block
+    private List<long[]> segments=new ArrayList<>();//segments.get(b)[a]..[a+1]: bytes of attribute a in block b
+    private int noOfRecords;
+    private int [][]remap;//remap[a][code]: code returned by a scan, null->the stored code
+
+    /**
+     * Counting a scan of spilled columns into tables.
+     */
+    abstract static class Scan<T>
+    {
+        /*
+         * a new, empty table for one chunk of records
+         */
+        protected abstract T newTable();
+
+        /*
+         * count n records into the table, cols[k][i] is the code of the k-th
+         * scanned attribute of record i of the chunk
+         */
+        protected abstract void scan(T table, int [][]cols, int n);
+
+        /*
+         * add the counts of the second table to the first one
+         */
+        protected abstract void merge(T into, T table);
+    }
+
+    /*
+     * create the temporary file, blocks take a 16th of the heap, 1 to 64 MB
+     */
+    ColumnStore(int noOfAttrs) throws IOException
+    {
+        this(noOfAttrs,Math.max(1L<<20,Math.min(1L<<26,Runtime.getRuntime().maxMemory()/16)));
+    }
+
+    ColumnStore(int noOfAttrs, long blockBytes) throws IOException
+    {
+        this.blockBytes=blockBytes;
+        block=new byte[noOfAttrs][16];
+        blockSize=new int[noOfAttrs];
+        remap=new int[noOfAttrs][];
+        file=File.createTempFile("lfd",".col");
+        file.deleteOnExit();
+        try
+        {
+            out=new BufferedOutputStream(new FileOutputStream(file),1<<16);
+        }
+        catch(IOException e)
+        {
+            close();
+            throw e;
+        }
+    }
+
+    /*
+     * append the codes of one record, -1->missing
+     */
+    void append(int []codes) throws IOException
+    {
+        for(int a=0;a<block.length;a++)
+        {
+            if(blockSize[a]+5>block[a].length)
+            {
+                block[a]=Arrays.copyOf(block[a],2*block[a].length+5);
+            }
+            byte []b=block[a];
+            int n=blockSize[a];
+            int v=codes[a]+1;
+            while((v & ~0x7F)!=0)
+            {
+                b[n++]=(byte)((v & 0x7F)|0x80);
+                v>>>=7;
+            }
+            b[n++]=(byte)v;
+            buffered+=n-blockSize[a];
+            blockSize[a]=n;
+        }
+        noOfRecords++;
+        if(buffered>=blockBytes)writeBlock();
+    }
+
+    /*
+     * write the codes held in memory, attribute by attribute
+     */
+    private void writeBlock() throws IOException
+    {
+        long []seg=new long[block.length+1];
+        seg[0]=written;
+        for(int a=0;a<block.length;a++)
+        {
+            out.write(block[a],0,blockSize[a]);
+            written+=blockSize[a];
+            seg[a+1]=written;
+            blockSize[a]=0;
+        }
+        segments.add(seg);
+        buffered=0;
+    }
+
+    /*
+     * flush the columns, no record can be appended afterwards
+     */
+    void finish() throws IOException
+    {
+        if(buffered>0)writeBlock();
+        block=null;
+        out.close();
+        out=null;
+        channel=FileChannel.open(file.toPath(),StandardOpenOption.READ);
+    }
+
+    int getNoOfRecords()
+    {
+        return noOfRecords;
+    }
+
+    /*
+     * return table[code] instead of the code of an attribute in every later
+     * scan, table[code] must not be below -1; a second table maps the codes of
+     * the first one
+     */
+    void remap(int attr, int []table)
+    {
+        int []first=remap[attr];
+        if(first!=null)
+        {
+            int []both=new int[first.length];
+            for(int c=0;c<first.length;c++)
+            {
+                both[c]=first[c]<0?-1:table[first[c]];
+            }
+            table=both;
+        }
+        remap[attr]=table;
+    }
+
+    /*
+     * scan the columns of the given attributes, a failed read throws
+     * UncheckedIOException
+     */
+    <T> T scan(int []attrs, Scan<T> scan)
+    {
+        int k=attrs.length;
+        //a 64th of the heap for the read buffers, 4 to 64 KB each
+        int size=(int)Math.max(1<<12,Math.min(1<<16,Runtime.getRuntime().maxMemory()/64/Math.max(k,1)));
+        ColumnInput []in=new ColumnInput[k];
+        for(int a=0;a<k;a++)
+        {
+            in[a]=new ColumnInput(attrs[a],size);
+        }
+        try
+        {
+            int [][]cols=new int[k][Math.min(noOfRecords,RowScan.CHUNK)];
+            return scanRange(0,noOfRecords,attrs,in,cols,scan);
+        }
+        catch(IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /*
+     * the chunks are visited in the order of the file, left half first
+     */
+    private <T> T scanRange(int from, int to, int []attrs, ColumnInput []in, int [][]cols, Scan<T> scan)
+            throws IOException
+    {
+        if(to-from<=RowScan.CHUNK)
+        {
+            int n=to-from;
+            for(int a=0;a<attrs.length;a++)
+            {
+                int []table=remap[attrs[a]];
+                int []col=cols[a];
+                for(int i=0;i<n;i++)
+                {
+                    int c=readCode(in[a]);
+                    col[i]=(table==null || c<0)?c:table[c];
+                }
+            }
+            T table=scan.newTable();
+            scan.scan(table,cols,n);
+            return table;
+        }
+        int mid=(from+to)>>>1;
+        T left=scanRange(from,mid,attrs,in,cols,scan);
+        scan.merge(left,scanRange(mid,to,attrs,in,cols,scan));
+        return left;
+    }
+
+    private static int readCode(ColumnInput in) throws IOException
+    {
+        int v=0, shift=0, b;
+        do
+        {
+            b=in.read();
+            v|=(b & 0x7F)<<shift;
+            shift+=7;
+        }
+        while((b & 0x80)!=0);
+        return v-1;
+    }
+
+    /*
+     * the bytes of one attribute, read segment by segment with positional
+     * reads, so concurrent scans share the channel
+     */
+    private class ColumnInput
+    {
+        private int attr;
+        private ByteBuffer buf;
+        private int b=-1;//block of the segment
+        private long pos, end;//bytes of the segment not read yet
+
+        ColumnInput(int attr, int size)
+        {
+            this.attr=attr;
+            buf=ByteBuffer.allocate(size);
+            buf.limit(0);
+        }
+
+        int read() throws IOException
+        {
+            if(!buf.hasRemaining())fill();
+            return buf.get() & 0xFF;
+        }
+
+        private void fill() throws IOException
+        {
+            while(pos==end)
+            {
+                if(++b==segments.size())throw new EOFException("The column of attribute "+attr+" ends early");
+                long []seg=segments.get(b);
+                pos=seg[attr];
+                end=seg[attr+1];
+            }
+            buf.clear();
+            buf.limit((int)Math.min(buf.capacity(),end-pos));
+            while(buf.hasRemaining())
+            {
+                if(channel.read(buf,pos+buf.position())<0)throw new EOFException("The column file ends early");
+            }
+            pos+=buf.position();
+            buf.flip();
+        }
+    }
+
+    /*
+     * delete the temporary file
+     */
+    @Override
+    public void close()
+    {
+        try
+        {
+            if(out!=null)out.close();
+            if(channel!=null)channel.close();
+        }
+        catch(IOException e)
+        {
+            //the file is deleted anyway
+        }
+        if(file!=null)file.delete();
+    }
+}
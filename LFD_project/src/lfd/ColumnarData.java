@@ -0,0 +1,36 @@
+package lfd;
+
+import java.io.IOException;
+
+/**
+ * Columns of a data set as LFD uses them: parsed values of the numerical
+ * attributes and dictionary codes of the categorical ones, without a String
+ * per value. A column that is null has not been parsed yet, it is parsed from
+ * the data file by materialize.
+ */
+class ColumnarData
+{
+    int noOfRecords;
+    int noOfAttrs;
+    double [][]numColumns;//numColumns[a][i]: value of numerical attribute a in record i, NaN->missing
+    int [][]catCodes;//catCodes[a][i]: code of categorical attribute a in record i, -1->missing
+    String [][]domainValues;//domainValues[a][code]: value of a code, in order of first appearance
+    MappedCsvReader source;//reader of the columns not parsed yet, null->all are parsed
+
+    ColumnarData(int noOfAttrs)
+    {
+        this.noOfAttrs=noOfAttrs;
+        numColumns=new double[noOfAttrs][];
+        catCodes=new int[noOfAttrs][];
+        domainValues=new String[noOfAttrs][];
+    }
+
+    /*
+     * parse the columns of the given attributes that are not in memory, in one
+     * pass over the data file
+     */
+    void materialize(int []attrs) throws IOException
+    {
+        if(source!=null)source.materialize(this,attrs);
+    }
+}
@@ -0,0 +1,126 @@
+package lfd;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from non-negative long keys to int counts, used for
+ * sparse contingency tables. Only keys with a count are stored.
+ */
+class CountMap
+{
+    private static final long EMPTY=-1L;
+    private long []keys;
+    private int []counts;
+    private int size;
+
+    CountMap()
+    {
+        this(16);
+    }
+
+    /*
+     * @param expected no. of keys the map holds without growing
+     */
+    CountMap(int expected)
+    {
+        int cap=16;
+        while(cap<expected*2)cap<<=1;
+        keys=new long[cap];
+        Arrays.fill(keys, EMPTY);
+        counts=new int[cap];
+    }
+
+    /*
+     * add n to the count of a key
+     */
+    void add(long key, int n)
+    {
+        int mask=keys.length-1;
+        int i=hash(key)&mask;
+        while(keys[i]!=EMPTY && keys[i]!=key)
+        {
+            i=(i+1)&mask;
+        }
+        if(keys[i]==EMPTY)
+        {
+            keys[i]=key;
+            size++;
+            if(size*2>keys.length)
+            {
+                counts[i]=n;
+                grow();
+                return;
+            }
+        }
+        counts[i]+=n;
+    }
+
+    /*
+     * count of a key, 0 if it is not in the map
+     */
+    int get(long key)
+    {
+        int mask=keys.length-1;
+        int i=hash(key)&mask;
+        while(keys[i]!=EMPTY)
+        {
+            if(keys[i]==key)return counts[i];
+            i=(i+1)&mask;
+        }
+        return 0;
+    }
+
+    int size()
+    {
+        return size;
+    }
+
+    /*
+     * add all counts of another map to this one
+     */
+    void addAll(CountMap other)
+    {
+        for(int i=0;i<other.keys.length;i++)
+        {
+            if(other.keys[i]!=EMPTY)add(other.keys[i],other.counts[i]);
+        }
+    }
+
+    /*
+     * the keys in ascending order
+     */
+    long []sortedKeys()
+    {
+        long []out=new long[size];
+        int k=0;
+        for(int i=0;i<keys.length;i++)
+        {
+            if(keys[i]!=EMPTY)
+            {
+                out[k]=keys[i];k++;
+            }
+        }
+        Arrays.sort(out);
+        return out;
+    }
+
+    private void grow()
+    {
+        long []oldKeys=keys;
+        int []oldCounts=counts;
+        keys=new long[oldKeys.length*2];
+        Arrays.fill(keys, EMPTY);
+        counts=new int[keys.length];
+        size=0;
+        for(int i=0;i<oldKeys.length;i++)
+        {
+            if(oldKeys[i]!=EMPTY)add(oldKeys[i],oldCounts[i]);
+        }
+    }
+
+    private static int hash(long key)
+    {
+        long h=key*0x9E3779B97F4A7C15L;
+        return (int)(h^(h>>>32));
+    }
+}
@@ -0,0 +1,396 @@
+package lfd;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Incremental CAIM and uncertainty scoring of candidate cut points for one
+ * numerical attribute against one categorical attribute.
+ *
+ * The records are counted once into blocks, where block b holds the values in
+ * (iCutpoints[b-1],iCutpoints[b]] and block 0 holds the minimum value. The
+ * block of every record is given, usually looked up through the rank index of
+ * the numerical attribute. The scorers of all selected categorical attributes
+ * are counted together in one pass over the records. The block counts give the
+ * class-count vector of any interval between two candidates without another
+ * pass over the records. The scorer keeps the terms of every accepted
+ * interval, so adding candidate t only needs the two new intervals of the
+ * interval that t splits.
+ *
+ * The contingency table is dense (DenseCutpointScorer) unless the domain size
+ * times the number of candidates exceeds SPARSE_CELLS, then only its non-zero
+ * cells are kept (SparseCutpointScorer). In both cases the CAIM and entropy
+ * sums are reduced in the same order as a contingency table built from
+ * scratch, so the values are identical to the full recomputation.
+ */
+abstract class CutpointScorer
+{
+    static final long SPARSE_CELLS=1L<<20;//largest dense table, in cells
+    static final double BOUND_SLACK=1e-9;//relative widening of upper bounds
+    int cv;//domain size of the categorical attribute
+    int M;//no. of records having both values
+    int []cuts;//accepted candidates in ascending order
+    int noi;//no. of intervals between the accepted candidates
+    double []caim;//caim[j]: CAIM term of interval j
+    int []maxCount;//maxCount[j]: largest class count of interval j
+    int []blockTotal;//blockTotal[b]: no. of records in blocks 0..b
+
+    /**
+     * Scratch class-count vectors and uncertainty terms of a split. Every worker
+     * scoring candidates owns one buffer, sized to the largest domain.
+     */
+    static class Buffer
+    {
+        int []left, right;
+        double []leftEnt, rightEnt;
+
+        Buffer(int size)
+        {
+            left=new int[size];right=new int[size];
+            leftEnt=new double[size];rightEnt=new double[size];
+        }
+    }
+
+    /**
+     * Block counts of one categorical attribute while the records are scanned.
+     */
+    abstract static class BlockCounts
+    {
+        /*
+         * count a record of code c in block b
+         */
+        abstract void add(int c, int b);
+
+        /*
+         * add the counts of another table of the same attribute
+         */
+        abstract void merge(BlockCounts table);
+
+        /*
+         * create the scorer of the counted blocks
+         */
+        abstract CutpointScorer scorer(int []fcFlg);
+    }
+
+    /*
+     * count the records of a numerical attribute and several categorical
+     * attributes into the blocks of the candidate cut points in one pass over the
+     * records, and create one scorer per categorical attribute. Flagged
+     * candidates are accepted.
+     *
+     * @param blocks block of the numerical value of every record, -1->missing
+     * @param cCols codes of the categorical attributes, -1->missing
+     * @param domainSizes domain sizes of the categorical attributes
+     * @param ticp no. of candidate cut points
+     * @param fcFlg 1->accepted candidate, 0->otherwise
+     * @param pool fork/join pool counting the records, null->serial
+     */
+    static CutpointScorer []create(int []blocks, int [][]cCols, int []domainSizes, int ticp, int []fcFlg,
+            ForkJoinPool pool)
+    {
+        BlockCounts []tables=new RowScan<BlockCounts[]>()
+        {
+            @Override
+            protected BlockCounts[] newTable()
+            {
+                return newCounts(domainSizes,ticp);
+            }
+
+            @Override
+            protected void scan(BlockCounts []table, int from, int to)
+            {
+                count(table,blocks,cCols,from,to);
+            }
+
+            @Override
+            protected void merge(BlockCounts []into, BlockCounts []table)
+            {
+                mergeCounts(into,table);
+            }
+        }.run(pool,blocks.length);
+        return scorers(tables,fcFlg);
+    }
+
+    /*
+     * create the scorers from spilled columns: the ranks of the numerical
+     * attribute and the codes of the categorical attributes
+     *
+     * @param nAttr numerical attribute, its codes are ranks
+     * @param blockOfRank block of every rank
+     * @param cAttrs categorical attributes
+     */
+    static CutpointScorer []create(ColumnStore store, int nAttr, int []blockOfRank, int []cAttrs,
+            int []domainSizes, int ticp, int []fcFlg)
+    {
+        int k=cAttrs.length;
+        int []attrs=new int[k+1];
+        attrs[0]=nAttr;
+        System.arraycopy(cAttrs, 0, attrs, 1, k);
+        BlockCounts []tables=store.scan(attrs,new ColumnStore.Scan<BlockCounts[]>()
+        {
+            @Override
+            protected BlockCounts[] newTable()
+            {
+                return newCounts(domainSizes,ticp);
+            }
+
+            @Override
+            protected void scan(BlockCounts []table, int [][]cols, int n)
+            {
+                int []blocks=cols[0];
+                for(int i=0;i<n;i++)
+                {
+                    if(blocks[i]>=0)blocks[i]=blockOfRank[blocks[i]];
+                }
+                count(table,blocks,Arrays.copyOfRange(cols,1,k+1),0,n);
+            }
+
+            @Override
+            protected void merge(BlockCounts []into, BlockCounts []table)
+            {
+                mergeCounts(into,table);
+            }
+        });
+        return scorers(tables,fcFlg);
+    }
+
+    /*
+     * empty block counts of the categorical attributes
+     */
+    private static BlockCounts []newCounts(int []domainSizes, int ticp)
+    {
+        int k=domainSizes.length;
+        BlockCounts []table=new BlockCounts[k];
+        for(int a=0;a<k;a++)
+        {
+            if((long)domainSizes[a]*ticp>SPARSE_CELLS)
+            {
+                table[a]=new SparseCutpointScorer.Counts(domainSizes[a],ticp);
+            }
+            else
+            {
+                table[a]=new DenseCutpointScorer.Counts(domainSizes[a],ticp);
+            }
+        }
+        return table;
+    }
+
+    /*
+     * count the records from..to-1 into the blocks
+     */
+    private static void count(BlockCounts []table, int []blocks, int [][]cCols, int from, int to)
+    {
+        int k=table.length;
+        for(int i=from;i<to;i++)
+        {
+            int b=blocks[i];
+            if(b>=0)
+            {
+                for(int a=0;a<k;a++)
+                {
+                    int c=cCols[a][i];
+                    if(c>=0)
+                    {
+                        table[a].add(c,b);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void mergeCounts(BlockCounts []into, BlockCounts []table)
+    {
+        for(int a=0;a<into.length;a++)
+        {
+            into[a].merge(table[a]);
+        }
+    }
+
+    private static CutpointScorer []scorers(BlockCounts []tables, int []fcFlg)
+    {
+        CutpointScorer []scorers=new CutpointScorer[tables.length];
+        for(int a=0;a<tables.length;a++)
+        {
+            scorers[a]=tables[a].scorer(fcFlg);
+        }
+        return scorers;
+    }
+
+    /*
+     * domain size of the categorical attribute
+     */
+    int getDomainSize()
+    {
+        return cv;
+    }
+
+    /*
+     * calculate CAIM and uncertainty of the accepted cut points plus candidate t,
+     * t must not be accepted yet. The scorer is only read, so candidates can be
+     * scored concurrently with one buffer per thread.
+     *
+     * @return CU[0]->CAIM, CU[1]->uncertainty
+     */
+    abstract double []score(int t, Buffer buf);
+
+    /*
+     * calculate CAIM and uncertainty of the accepted cut points
+     *
+     * @return CU[0]->CAIM, CU[1]->uncertainty
+     */
+    abstract double []scoreAccepted();
+
+    /*
+     * accept candidate t, the interval containing t is split in two
+     */
+    abstract void split(int t);
+
+    /*
+     * true if the blocks b and b+1 have the same relative class distribution,
+     * or one of them has no records
+     */
+    abstract boolean sameDistribution(int b);
+
+    /*
+     * no. of records in block b
+     */
+    int blockCount(int b)
+    {
+        return b==0?blockTotal[0]:blockTotal[b]-blockTotal[b-1];
+    }
+
+    /*
+     * collect the flagged candidates as the accepted cut points
+     */
+    void initCuts(int ticp, int []fcFlg)
+    {
+        cuts=new int[ticp];
+        caim=new double[ticp];
+        maxCount=new int[ticp];
+        int nc=0;
+        for(int t=0;t<ticp;t++)
+        {
+            if(fcFlg[t]==1)
+            {
+                cuts[nc]=t;nc++;
+            }
+        }
+        noi=nc-1;
+    }
+
+    /*
+     * insert candidate t as the accepted cut point j+1, the terms of the
+     * intervals behind j have to be moved by the caller first
+     */
+    void insertCut(int j, int t, double lCaim, double rCaim, int lMax, int rMax)
+    {
+        System.arraycopy(cuts, j+1, cuts, j+2, noi-j);
+        System.arraycopy(caim, j+1, caim, j+2, noi-j-1);
+        System.arraycopy(maxCount, j+1, maxCount, j+2, noi-j-1);
+        cuts[j+1]=t;
+        caim[j]=lCaim;caim[j+1]=rCaim;
+        maxCount[j]=lMax;maxCount[j+1]=rMax;
+        noi++;
+    }
+
+    /*
+     * Upper bound of the CAIM that score(t) returns. Splitting interval j of n
+     * records and largest class count m into l and n-l records gives two
+     * intervals whose largest class counts are at most min(l,m) and
+     * min(n-l,m), so their CAIM terms are at most min(l,m*m/l) and
+     * min(n-l,m*m/(n-l)). The bound is widened by BOUND_SLACK to cover the
+     * rounding of the computed CAIM.
+     */
+    double upperBound(int t)
+    {
+        int j=findSplitInterval(t);
+        int base=j==0?0:blockTotal[cuts[j]];
+        int n=blockTotal[cuts[j+1]]-base;
+        int l=blockTotal[t]-base;
+        double m2=(double)maxCount[j]*maxCount[j];
+        double bound=0.0;
+        for(int k=0;k<noi;k++)
+        {
+            if(k!=j)bound+=caim[k];
+        }
+        if(l>0)bound+=Math.min(l, m2/l);
+        if(n-l>0)bound+=Math.min(n-l, m2/(n-l));
+        return bound/(noi+1)*(1.0+BOUND_SLACK);
+    }
+
+    /*
+     * CAIM of the accepted intervals
+     */
+    double totalCaim()
+    {
+        double totCaim=0.0;
+        for(int k=0;k<noi;k++)
+        {
+            totCaim+=caim[k];
+        }
+        return noi>0?totCaim/(double)noi:0.0;
+    }
+
+    /*
+     * CAIM of the accepted intervals with interval j split in two
+     */
+    double totalCaim(int j, double leftCaim, double rightCaim)
+    {
+        int NOI=noi+1;
+        double totCaim=0.0;
+        for(int k=0;k<j;k++)
+        {
+            totCaim+=caim[k];
+        }
+        totCaim+=leftCaim;
+        totCaim+=rightCaim;
+        for(int k=j+1;k<noi;k++)
+        {
+            totCaim+=caim[k];
+        }
+        return totCaim/(double)NOI;
+    }
+
+    /*
+     * find the interval j of the accepted cut points with cuts[j]<t<cuts[j+1]
+     */
+    int findSplitInterval(int t)
+    {
+        int lo=0, hi=noi-1;
+        while(lo<hi)
+        {
+            int mid=(lo+hi+1)>>>1;
+            if(cuts[mid]<t)
+            {
+                lo=mid;
+            }
+            else
+            {
+                hi=mid-1;
+            }
+        }
+        return lo;
+    }
+
+    /*
+     * uncertainty term of a cell having n records
+     */
+    double uncertainty(int n)
+    {
+        double Pcj=n/(double)M;
+        if(Pcj>0)
+        {
+            return Pcj*Math.log(1.0/Pcj);
+        }
+        return 0.0;
+    }
+
+    /*
+     * CAIM term of an interval
+     */
+    static double caimTerm(int mxr, int colTotal)
+    {
+        if(colTotal>0)return Math.pow((double)mxr, 2.0)/colTotal;
+        return 0.0;
+    }
+}
@@ -0,0 +1,194 @@
+package lfd;
+
+/**
+ * Cut point scorer keeping the full contingency table: prefix sums of the
+ * block counts per code, and the class-count vector and uncertainty terms of
+ * every accepted interval.
+ */
+class DenseCutpointScorer extends CutpointScorer
+{
+    private int [][]prefix;//prefix[c][b]: no. of records of code c in blocks 0..b
+    private int [][]count;//count[j][c]: no. of records of code c in interval j
+    private double [][]ent;//ent[j][c]: uncertainty term of the cell (c,j)
+
+    /**
+     * Dense block counts, counts[c][b] holds the records of code c in block b.
+     */
+    static class Counts extends BlockCounts
+    {
+        private int [][]counts;
+        private int cv, ticp;
+
+        Counts(int cv, int ticp)
+        {
+            this.cv=cv;this.ticp=ticp;
+            counts=new int[cv][ticp];
+        }
+
+        @Override
+        void add(int c, int b)
+        {
+            counts[c][b]++;
+        }
+
+        @Override
+        void merge(BlockCounts table)
+        {
+            int [][]other=((Counts)table).counts;
+            for(int c=0;c<cv;c++)
+            {
+                for(int b=0;b<ticp;b++)
+                {
+                    counts[c][b]+=other[c][b];
+                }
+            }
+        }
+
+        @Override
+        CutpointScorer scorer(int []fcFlg)
+        {
+            return new DenseCutpointScorer(counts,cv,ticp,fcFlg);
+        }
+    }
+
+    /*
+     * @param blockCount blockCount[c][b]: no. of records of code c in block b,
+     * turned into the prefix sums
+     */
+    private DenseCutpointScorer(int [][]blockCount, int domainSize, int ticp, int []fcFlg)
+    {
+        cv=domainSize;
+        prefix=blockCount;
+        M=0;
+        for(int c=0;c<cv;c++)
+        {
+            for(int b=1;b<ticp;b++)
+            {
+                prefix[c][b]+=prefix[c][b-1];
+            }
+            if(ticp>0)M+=prefix[c][ticp-1];
+        }
+        blockTotal=new int[ticp];
+        for(int c=0;c<cv;c++)
+        {
+            for(int b=0;b<ticp;b++)
+            {
+                blockTotal[b]+=prefix[c][b];
+            }
+        }
+        initCuts(ticp,fcFlg);
+        count=new int[ticp][];
+        ent=new double[ticp][];
+        for(int j=0;j<noi;j++)
+        {
+            count[j]=new int[cv];
+            ent[j]=new double[cv];
+            caim[j]=fillInterval(j==0?-1:cuts[j],cuts[j+1],count[j],ent[j]);
+            maxCount[j]=max(count[j]);
+        }
+    }
+
+    @Override
+    double []score(int t, Buffer buf)
+    {
+        int j=findSplitInterval(t);
+        double leftCaim=fillInterval(j==0?-1:cuts[j],t,buf.left,buf.leftEnt);
+        double rightCaim=fillInterval(t,cuts[j+1],buf.right,buf.rightEnt);
+        double []leftEnt=buf.leftEnt, rightEnt=buf.rightEnt;
+        double []CU=new double[2];
+        CU[0]=totalCaim(j,leftCaim,rightCaim);
+        double entrophy=0.0;
+        for(int c=0;c<cv;c++)
+        {
+            for(int k=0;k<j;k++)
+            {
+                entrophy+=ent[k][c];
+            }
+            entrophy+=leftEnt[c];
+            entrophy+=rightEnt[c];
+            for(int k=j+1;k<noi;k++)
+            {
+                entrophy+=ent[k][c];
+            }
+        }
+        CU[1]=entrophy;
+        return CU;
+    }
+
+    @Override
+    double []scoreAccepted()
+    {
+        double []CU=new double[2];
+        CU[0]=totalCaim();
+        double entrophy=0.0;
+        for(int c=0;c<cv;c++)
+        {
+            for(int k=0;k<noi;k++)
+            {
+                entrophy+=ent[k][c];
+            }
+        }
+        CU[1]=entrophy;
+        return CU;
+    }
+
+    @Override
+    void split(int t)
+    {
+        int j=findSplitInterval(t);
+        int []lc=new int[cv], rc=new int[cv];
+        double []le=new double[cv], re=new double[cv];
+        double lCaim=fillInterval(j==0?-1:cuts[j],t,lc,le);
+        double rCaim=fillInterval(t,cuts[j+1],rc,re);
+        System.arraycopy(count, j+1, count, j+2, noi-j-1);
+        System.arraycopy(ent, j+1, ent, j+2, noi-j-1);
+        count[j]=lc;count[j+1]=rc;
+        ent[j]=le;ent[j+1]=re;
+        insertCut(j,t,lCaim,rCaim,max(lc),max(rc));
+    }
+
+    private static int max(int []cnt)
+    {
+        int mx=0;
+        for(int n:cnt)
+        {
+            if(n>mx)mx=n;
+        }
+        return mx;
+    }
+
+    @Override
+    boolean sameDistribution(int b)
+    {
+        long n1=blockCount(b), n2=blockCount(b+1);
+        if(n1==0 || n2==0)return true;
+        for(int c=0;c<cv;c++)
+        {
+            long x=prefix[c][b], y=prefix[c][b+1]-prefix[c][b];
+            if(b>0)x-=prefix[c][b-1];
+            if(x*n2!=y*n1)return false;
+        }
+        return true;
+    }
+
+    /*
+     * fill the class-count vector and uncertainty terms of the blocks from+1..to,
+     * from=-1 starts at block 0
+     *
+     * @return CAIM term of the interval
+     */
+    private double fillInterval(int from, int to, int []cnt, double []terms)
+    {
+        int colTotal=0, mxr=0;
+        for(int c=0;c<cv;c++)
+        {
+            int n=prefix[c][to];
+            if(from>=0)n-=prefix[c][from];
+            cnt[c]=n;
+            colTotal+=n;
+            if(n>mxr)mxr=n;
+            terms[c]=uncertainty(n);
+        }
+        return caimTerm(mxr,colTotal);
+    }
+}
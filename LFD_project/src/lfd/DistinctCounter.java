@@ -0,0 +1,59 @@
+package lfd;
+
+/**
+ * HyperLogLog estimate of the number of distinct values of a stream in a fixed
+ * 16 KB of registers, with a relative standard error of about 0.8%.
+ */
+class DistinctCounter
+{
+    private static final int P=14;
+    private byte []registers=new byte[1<<P];
+
+    /*
+     * add a value of the stream, NaN is ignored
+     */
+    void add(double v)
+    {
+        if(Double.isNaN(v))return;
+        long h=mix(Double.doubleToLongBits(v==0.0?0.0:v));
+        int index=(int)(h>>>(64-P));
+        long w=(h<<P)|(1L<<(P-1));
+        byte rho=(byte)(Long.numberOfLeadingZeros(w)+1);
+        if(rho>registers[index])registers[index]=rho;
+    }
+
+    /*
+     * estimated no. of distinct values
+     */
+    double estimate()
+    {
+        int m=registers.length;
+        double sum=0.0;
+        int zeros=0;
+        for(int i=0;i<m;i++)
+        {
+            sum+=1.0/(1L<<registers[i]);
+            if(registers[i]==0)zeros++;
+        }
+        double alpha=0.7213/(1.0+1.079/m);
+        double e=alpha*m*(double)m/sum;
+        if(e<=2.5*m && zeros>0)
+        {
+            e=m*Math.log((double)m/zeros);
+        }
+        return e;
+    }
+
+    /*
+     * 64 bit finalizer of MurmurHash3
+     */
+    private static long mix(long h)
+    {
+        h^=h>>>33;
+        h*=0xff51afd7ed558ccdL;
+        h^=h>>>33;
+        h*=0xc4ceb93fe53d8ce5L;
+        h^=h>>>33;
+        return h;
+    }
+}
@@ -0,0 +1,571 @@
+package lfd;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Cost-based choice of the strategy of a run: exact serial, exact parallel,
+ * sketch candidates or sampling.
+ *
+ * The data set is profiled in one pass: the number of records and attributes,
+ * and per attribute the missing rate and the number of distinct values
+ * (DistinctCounter, or the dictionary of a categorical column). The candidate
+ * cut points of a numerical attribute are its low frequency values; their share
+ * of the distinct values is measured on an evenly spaced subset of at most
+ * PROFILE_ROWS records. The data set is given as records of strings or as the
+ * columns of MappedCsvReader.
+ *
+ * The time and memory of every strategy are estimated from the profile with
+ * rough per-operation costs of this implementation. The estimates only have to
+ * rank the strategies and tell their order of magnitude. The exact strategy
+ * with the smaller time is chosen if it fits both budgets, else sketch
+ * candidates, else the largest sample that fits. If nothing fits the time
+ * budget, the fastest strategy within the memory budget is chosen and the time
+ * budget of the run cuts its greedy selections short.
+ */
+class ExecutionPlanner
+{
+    static final int EXACT=0, PARALLEL=1, SKETCH=2, SAMPLE=3;
+    private static final String []NAMES={"exact serial","exact parallel","sketch","sampling"};
+    private static final int PROFILE_ROWS=1<<16;//records profiled for the candidate cut points
+    private static final int MIN_SAMPLE=1000;//smallest sample considered
+    private static final double SKETCH_EPSILON=0.001;//error bound of the sketch strategy
+    //rough costs of this implementation in nanoseconds
+    private static final double NS_PARSE=150.0;//read, parse and write one value
+    private static final double NS_SORT=25.0;//per record and comparison level of the rank index
+    private static final double NS_COUNT=6.0;//count one record into a table
+    private static final double NS_CELL=3.0;//one cell of a contingency table scored
+    private static final double NS_SKETCH=60.0;//one value into the sketches
+    private static final double NS_APPLY=30.0;//one value discretized
+    private static final double LAZY_FRACTION=0.1;//share of the candidates the lazy search scores
+    private static final double MAX_STEPS=16.0;//greedy steps of an attribute, the objective rarely rises longer
+    private static final double PARALLEL_EFFICIENCY=0.7;
+
+    //profile
+    private int noOfRecords, noOfAttrs, noOfNumAttrs, noOfCatAttrs;
+    private String []attrNames;
+    private boolean []numerical;
+    private double []distinct;//estimated no. of distinct values
+    private double []missingRate;
+    private double []candidates;//estimated no. of candidate cut points, numerical attributes
+    private double valueBytes;//bytes of a value held as a String, 0->the values are columns
+    private double pCatAttrs;
+
+    //plan
+    private int strategy;
+    private int threads;
+    private int sampleSize;
+    private double []time=new double[4];//estimated time of every strategy in ms, NaN->not available
+    private double []memory=new double[4];//estimated memory of every strategy in bytes
+    private long memoryBudget, timeBudget;
+    private boolean fits;
+
+    /*
+     * profile the records of a data set
+     *
+     * @param pCatAttrs share of the categorical attributes a numerical attribute
+     * is discretized with
+     */
+    ExecutionPlanner(String [][]dataset, String [][]attrInfo, double pCatAttrs)
+    {
+        this(dataset.length,dataset.length>0?dataset[0].length:0,attrInfo,pCatAttrs);
+        DistinctCounter []counters=new DistinctCounter[noOfAttrs];
+        for(int a=0;a<noOfAttrs;a++)
+        {
+            counters[a]=new DistinctCounter();
+        }
+        long []missing=new long[noOfAttrs];
+        long length=0;
+        for(int i=0;i<noOfRecords;i++)
+        {
+            for(int a=0;a<noOfAttrs;a++)
+            {
+                String v=dataset[i][a];
+                length+=v.length();
+                if(LFD.isMissing(v)==1)
+                {
+                    missing[a]++;
+                }
+                else if(numerical[a])
+                {
+                    counters[a].add(Double.parseDouble(v));
+                }
+                else
+                {
+                    counters[a].add(v.hashCode());
+                }
+            }
+        }
+        if(noOfRecords>0 && noOfAttrs>0)valueBytes=56.0+2.0*length/((double)noOfRecords*noOfAttrs);
+        int stride=stride();
+        for(int a=0;a<noOfAttrs;a++)
+        {
+            if(noOfRecords>0)missingRate[a]=(double)missing[a]/noOfRecords;
+            distinct[a]=Math.min(counters[a].estimate(),(double)(noOfRecords-missing[a]));
+            if(numerical[a])
+            {
+                double []subset=new double[(noOfRecords+stride-1)/stride];
+                int n=0;
+                for(int i=0;i<noOfRecords;i+=stride)
+                {
+                    String v=dataset[i][a];
+                    if(LFD.isMissing(v)==0)
+                    {
+                        subset[n]=Double.parseDouble(v);n++;
+                    }
+                }
+                candidates[a]=estimateCandidates(a,subset,n);
+            }
+        }
+    }
+
+    /*
+     * Profile the columns of a data set. Categorical columns that are not
+     * parsed yet are parsed in batches of up to a quarter of the heap; if they
+     * do not fit in one batch, they are dropped again after profiling.
+     */
+    ExecutionPlanner(ColumnarData data, String [][]attrInfo, double pCatAttrs) throws IOException
+    {
+        this(data.noOfRecords,data.noOfAttrs,attrInfo,pCatAttrs);
+        int stride=stride();
+        int []cAttrs=new int[noOfCatAttrs];
+        int nC=0;
+        for(int a=0;a<noOfAttrs;a++)
+        {
+            if(!numerical[a])
+            {
+                cAttrs[nC]=a;nC++;
+                continue;
+            }
+            double []col=data.numColumns[a];
+            DistinctCounter counter=new DistinctCounter();
+            long missing=0;
+            for(int i=0;i<noOfRecords;i++)
+            {
+                if(Double.isNaN(col[i]))
+                {
+                    missing++;
+                }
+                else
+                {
+                    counter.add(col[i]);
+                }
+            }
+            if(noOfRecords>0)missingRate[a]=(double)missing/noOfRecords;
+            distinct[a]=Math.min(counter.estimate(),(double)(noOfRecords-missing));
+            double []subset=new double[(noOfRecords+stride-1)/stride];
+            int n=0;
+            for(int i=0;i<noOfRecords;i+=stride)
+            {
+                if(!Double.isNaN(col[i]))
+                {
+                    subset[n]=col[i];n++;
+                }
+            }
+            candidates[a]=estimateCandidates(a,subset,n);
+        }
+        long perColumn=4L*Math.max(noOfRecords,1);
+        int batch=(int)Math.max(1,Math.min(noOfCatAttrs,Runtime.getRuntime().maxMemory()/4/perColumn));
+        for(int from=0;from<noOfCatAttrs;from+=batch)
+        {
+            int []attrs=Arrays.copyOfRange(cAttrs,from,Math.min(from+batch,noOfCatAttrs));
+            boolean []parsed=new boolean[attrs.length];
+            for(int k=0;k<attrs.length;k++)
+            {
+                parsed[k]=data.catCodes[attrs[k]]!=null;
+            }
+            data.materialize(attrs);
+            for(int k=0;k<attrs.length;k++)
+            {
+                int a=attrs[k];
+                long missing=0;
+                for(int c:data.catCodes[a])
+                {
+                    if(c<0)missing++;
+                }
+                if(noOfRecords>0)missingRate[a]=(double)missing/noOfRecords;
+                distinct[a]=data.domainValues[a].length;
+                if(!parsed[k] && batch<noOfCatAttrs && data.source!=null)
+                {
+                    data.catCodes[a]=null;
+                    data.domainValues[a]=null;
+                }
+            }
+        }
+    }
+
+    private ExecutionPlanner(int noOfRecords, int noOfAttrs, String [][]attrInfo, double pCatAttrs)
+    {
+        this.pCatAttrs=pCatAttrs;
+        this.noOfRecords=noOfRecords;
+        this.noOfAttrs=noOfAttrs;
+        attrNames=new String[noOfAttrs];
+        numerical=new boolean[noOfAttrs];
+        distinct=new double[noOfAttrs];
+        missingRate=new double[noOfAttrs];
+        candidates=new double[noOfAttrs];
+        for(int a=0;a<noOfAttrs;a++)
+        {
+            attrNames[a]=attrInfo[1][a];
+            numerical[a]=attrInfo[0][a].equals("1");
+            if(numerical[a])
+            {
+                noOfNumAttrs++;
+            }
+            else
+            {
+                noOfCatAttrs++;
+            }
+        }
+    }
+
+    /*
+     * step between the records of the subset the candidates are estimated on
+     */
+    private int stride()
+    {
+        return Math.max(1,(noOfRecords+PROFILE_ROWS-1)/PROFILE_ROWS);
+    }
+
+    /*
+     * Candidate cut points of a numerical attribute: the values of the subset
+     * whose frequency is below the average frequency, plus the smallest and the
+     * largest value, scaled to the distinct values of the whole data set.
+     *
+     * @param subset the n values of the subset that are not missing
+     */
+    private double estimateCandidates(int a, double []subset, int n)
+    {
+        HashMap<Double,int[]> fq=new HashMap<>();
+        for(int i=0;i<n;i++)
+        {
+            int []c=fq.computeIfAbsent(subset[i], k -> new int[1]);
+            c[0]++;
+        }
+        int ds=fq.size();
+        if(ds==0)return 0.0;
+        double lambda=(double)n/ds;
+        int low=0;
+        for(int []c:fq.values())
+        {
+            if(c[0]<lambda)low++;
+        }
+        double share=(double)low/ds;
+        return Math.min(distinct[a],Math.max(2.0,share*distinct[a]+2.0));
+    }
+
+    /*
+     * estimate every strategy and choose one
+     *
+     * @param parallelism threads of the run as given by the user (the
+     * available processors by default), 1->no parallel strategy
+     * @param lazy lazy greedy selection
+     * @param memoryBudget bytes
+     * @param timeBudget milliseconds, 0->unlimited
+     */
+    void choose(int parallelism, boolean lazy, long memoryBudget, long timeBudget)
+    {
+        this.memoryBudget=memoryBudget;
+        this.timeBudget=timeBudget;
+        threads=Math.max(parallelism,1);
+        time[EXACT]=exactTime(1.0,1,lazy,Double.POSITIVE_INFINITY);
+        memory[EXACT]=exactMemory(1.0,1,Double.POSITIVE_INFINITY);
+        if(threads>1)
+        {
+            time[PARALLEL]=exactTime(1.0,threads,lazy,Double.POSITIVE_INFINITY);
+            memory[PARALLEL]=exactMemory(1.0,threads,Double.POSITIVE_INFINITY);
+        }
+        else
+        {
+            time[PARALLEL]=Double.NaN;
+            memory[PARALLEL]=Double.NaN;
+        }
+        time[SKETCH]=sketchTime(threads,lazy);
+        memory[SKETCH]=sketchMemory(threads);
+        //largest sample fitting both budgets, halving from half of the records
+        sampleSize=0;
+        time[SAMPLE]=Double.NaN;
+        memory[SAMPLE]=Double.NaN;
+        for(int n=noOfRecords/2;n>=MIN_SAMPLE;n/=2)
+        {
+            sampleSize=n;
+            time[SAMPLE]=sampleTime(n,threads,lazy);
+            memory[SAMPLE]=sampleMemory(n,threads);
+            if(fits(SAMPLE))break;
+        }
+        int []preference=new int[4];
+        boolean parallelFirst=!Double.isNaN(time[PARALLEL]) && time[PARALLEL]<time[EXACT];
+        preference[0]=parallelFirst?PARALLEL:EXACT;
+        preference[1]=parallelFirst?EXACT:PARALLEL;
+        preference[2]=SKETCH;
+        preference[3]=SAMPLE;
+        strategy=-1;
+        for(int p=0;p<4 && strategy<0;p++)
+        {
+            if(fits(preference[p]))strategy=preference[p];
+        }
+        fits=strategy>=0;
+        if(!fits)
+        {
+            //the fastest strategy within the memory budget, else the smallest one
+            for(int s=0;s<4;s++)
+            {
+                if(Double.isNaN(time[s]))continue;
+                if(memory[s]<=memoryBudget && (strategy<0 || time[s]<time[strategy]))strategy=s;
+            }
+            if(strategy<0)
+            {
+                for(int s=0;s<4;s++)
+                {
+                    if(Double.isNaN(memory[s]))continue;
+                    if(strategy<0 || memory[s]<memory[strategy])strategy=s;
+                }
+            }
+        }
+    }
+
+    private boolean fits(int s)
+    {
+        if(Double.isNaN(time[s]))return false;
+        return memory[s]<=memoryBudget && (timeBudget<=0 || time[s]<=timeBudget);
+    }
+
+    int getStrategy()
+    {
+        return strategy;
+    }
+
+    /*
+     * threads of the chosen strategy
+     */
+    int getThreads()
+    {
+        return strategy==EXACT?1:threads;
+    }
+
+    /*
+     * error bound of the sketch strategy, 0->exact candidates
+     */
+    double getSketchEpsilon()
+    {
+        return strategy==SKETCH?SKETCH_EPSILON:0.0;
+    }
+
+    /*
+     * sample size of the sampling strategy, 0->all records
+     */
+    int getSampleSize()
+    {
+        return strategy==SAMPLE?sampleSize:0;
+    }
+
+    /*
+     * the profile, the estimates of every strategy and the chosen one
+     */
+    @Override
+    public String toString()
+    {
+        StringBuilder plan=new StringBuilder();
+        plan.append("Execution plan: ").append(label(strategy));
+        if(!fits)plan.append(" (no strategy fits the budgets)");
+        plan.append("\n  ").append(noOfRecords).append(" records, ").append(noOfAttrs).append(" attributes (")
+                .append(noOfNumAttrs).append(" numerical, ").append(noOfCatAttrs).append(" categorical)");
+        for(int a=0;a<noOfAttrs;a++)
+        {
+            plan.append("\n  ").append(attrNames[a]).append(": ~").append(Math.round(distinct[a]))
+                    .append(" distinct values");
+            if(numerical[a])plan.append(", ~").append(Math.round(candidates[a])).append(" candidate cut points");
+            plan.append(", ").append(percent(missingRate[a])).append(" missing");
+        }
+        for(int s=0;s<4;s++)
+        {
+            if(Double.isNaN(time[s]))continue;
+            plan.append("\n  ").append(s==strategy?"* ":"  ").append(label(s)).append(": ~")
+                    .append(millis(time[s])).append(", ~").append(megabytes(memory[s]));
+        }
+        plan.append("\n  budget: ").append(timeBudget>0?millis(timeBudget):"unlimited time").append(", ")
+                .append(megabytes(memoryBudget));
+        return plan.toString();
+    }
+
+    private String label(int s)
+    {
+        switch(s)
+        {
+            case PARALLEL:
+                return NAMES[s]+" ("+threads+" threads)";
+            case SKETCH:
+                return NAMES[s]+" (e="+SKETCH_EPSILON+")";
+            case SAMPLE:
+                return NAMES[s]+" ("+sampleSize+" records)";
+            default:
+                return NAMES[s];
+        }
+    }
+
+    private static String percent(double rate)
+    {
+        return String.format("%.1f%%",100.0*rate);
+    }
+
+    private static String millis(double ms)
+    {
+        if(ms>=1000.0)return String.format("%.1f s",ms/1000.0);
+        return String.format("%.0f ms",ms);
+    }
+
+    private static String megabytes(double bytes)
+    {
+        return String.format("%.0f MB",bytes/(1024.0*1024.0));
+    }
+
+    /*
+     * no. of categorical attributes a numerical attribute is discretized
+     * with, on average over the run
+     */
+    private double selectedCatAttrs()
+    {
+        return Math.max(1.0,Math.floor(pCatAttrs*(noOfCatAttrs+noOfNumAttrs/2.0)));
+    }
+
+    /*
+     * average domain size of the categorical attributes
+     */
+    private double avgDomain()
+    {
+        double sum=0.0;
+        for(int a=0;a<noOfAttrs;a++)
+        {
+            if(!numerical[a])sum+=distinct[a];
+        }
+        return noOfCatAttrs>0?Math.max(2.0,sum/noOfCatAttrs):2.0;
+    }
+
+    /*
+     * time in ns of the greedy selection of one numerical attribute on n
+     * records and c candidates
+     */
+    private double greedyTime(double n, double c, boolean lazy, int threads)
+    {
+        double sel=selectedCatAttrs(), d=avgDomain();
+        double steps=Math.min(c,Math.min(d,MAX_STEPS)+1.0);
+        double evals=lazy?c*steps*LAZY_FRACTION+steps*threads:c*steps;
+        //a sparse table scores at most one cell per record
+        double cells=Math.min(d*(steps/2.0+2.0),n);
+        double tables=n*sel*NS_COUNT+Math.min(c*d,n)*sel*NS_COUNT;
+        return evals*sel*cells*NS_CELL+tables;
+    }
+
+    /*
+     * time in ns of the correlation ratios of one numerical attribute
+     */
+    private double etaTime(double n)
+    {
+        return n*noOfCatAttrs*NS_COUNT;
+    }
+
+    private double parallelShare(int threads)
+    {
+        return threads>1?threads*PARALLEL_EFFICIENCY:1.0;
+    }
+
+    /*
+     * time in ms of the exact strategy on a share f of the records
+     */
+    private double exactTime(double f, int threads, boolean lazy, double maxCandidates)
+    {
+        double n=f*noOfRecords;
+        double fit=0.0;
+        for(int a=0;a<noOfAttrs;a++)
+        {
+            if(!numerical[a])continue;
+            double c=Math.min(Math.max(2.0,candidates[a]*f),maxCandidates);
+            double sort=maxCandidates<Double.POSITIVE_INFINITY?n*NS_SKETCH:n*log2(n)*NS_SORT;
+            fit+=sort+etaTime(n)+greedyTime(n,c,lazy,threads);
+        }
+        double parse=(double)noOfRecords*noOfAttrs*NS_PARSE;
+        return (parse+fit/parallelShare(threads))/1e6;
+    }
+
+    private double sketchTime(int threads, boolean lazy)
+    {
+        double apply=(double)noOfRecords*noOfNumAttrs*NS_APPLY/1e6;
+        return exactTime(1.0,threads,lazy,2.0/SKETCH_EPSILON)+apply;
+    }
+
+    /*
+     * the sample is fitted and validated, then all records are discretized
+     */
+    private double sampleTime(int n, int threads, boolean lazy)
+    {
+        double f=(double)n/noOfRecords;
+        double parse=(double)noOfRecords*noOfAttrs*NS_PARSE/1e6;
+        double fit=exactTime(f,threads,lazy,Double.POSITIVE_INFINITY)-parse;
+        double apply=(double)noOfRecords*noOfNumAttrs*NS_APPLY/1e6;
+        return parse+2.0*fit+apply;
+    }
+
+    /*
+     * bytes of the values as strings, their codes and the numerical columns
+     */
+    private double dataMemory(double n)
+    {
+        double strings=n*noOfAttrs*valueBytes;
+        return strings+n*noOfAttrs*4.0+n*noOfNumAttrs*8.0;
+    }
+
+    /*
+     * bytes of the largest scorer tables and the block of every record
+     */
+    private double tableMemory(double n, double f, int threads, double maxCandidates)
+    {
+        double sel=selectedCatAttrs(), d=avgDomain();
+        double largest=0.0;
+        for(int a=0;a<noOfAttrs;a++)
+        {
+            if(!numerical[a])continue;
+            double c=Math.min(Math.max(2.0,candidates[a]*f),maxCandidates);
+            double cells=c*d<=CutpointScorer.SPARSE_CELLS?c*d*4.0:Math.min(c*d,n)*12.0;
+            largest=Math.max(largest,sel*cells);
+        }
+        return largest*threads+n*4.0;
+    }
+
+    private double rankMemory(double n, double f)
+    {
+        double bytes=0.0;
+        for(int a=0;a<noOfAttrs;a++)
+        {
+            if(numerical[a])bytes+=n*4.0+distinct[a]*f*16.0;
+        }
+        return bytes;
+    }
+
+    private double exactMemory(double f, int threads, double maxCandidates)
+    {
+        double n=f*noOfRecords;
+        return dataMemory(noOfRecords)+rankMemory(n,f)+tableMemory(n,f,threads,maxCandidates);
+    }
+
+    private double sketchMemory(int threads)
+    {
+        double sketches=noOfNumAttrs*(16384.0+24.0*2.0/SKETCH_EPSILON);
+        return dataMemory(noOfRecords)+tableMemory(noOfRecords,1.0,threads,2.0/SKETCH_EPSILON)+sketches;
+    }
+
+    /*
+     * the sample and the validation slice share the strings of the data set
+     */
+    private double sampleMemory(int n, int threads)
+    {
+        double f=(double)n/noOfRecords;
+        double copy=2.0*(n*noOfAttrs*(8.0+4.0)+n*noOfNumAttrs*8.0);
+        return dataMemory(noOfRecords)+copy+rankMemory(n,f)+tableMemory(n,f,threads,Double.POSITIVE_INFINITY);
+    }
+
+    private static double log2(double n)
+    {
+        return n>1.0?Math.log(n)/Math.log(2.0):1.0;
+    }
+}
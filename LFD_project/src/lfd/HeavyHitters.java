@@ -0,0 +1,69 @@
+package lfd;
+
+import java.util.HashMap;
+import java.util.Iterator;
+
+/**
+ * Misra-Gries summary of the most frequent values of a stream, using at most
+ * capacity counters. Every value that occurs more than n/(capacity+1) times
+ * keeps a counter, and a counter underestimates the frequency of its value by
+ * at most n/(capacity+1).
+ */
+class HeavyHitters
+{
+    private int capacity;
+    private HashMap<Double,int[]> counters;
+    private long n;
+
+    HeavyHitters(int capacity)
+    {
+        this.capacity=Math.max(capacity,1);
+        counters=new HashMap<>();
+    }
+
+    /*
+     * add a value of the stream, NaN is ignored
+     */
+    void add(double v)
+    {
+        if(Double.isNaN(v))return;
+        n++;
+        Double key=v==0.0?0.0:v;//-0.0 and 0.0 are the same value
+        int []c=counters.get(key);
+        if(c!=null)
+        {
+            c[0]++;
+        }
+        else if(counters.size()<capacity)
+        {
+            counters.put(key,new int[]{1});
+        }
+        else
+        {
+            Iterator<int[]> it=counters.values().iterator();
+            while(it.hasNext())
+            {
+                int []cnt=it.next();
+                cnt[0]--;
+                if(cnt[0]==0)it.remove();
+            }
+        }
+    }
+
+    /*
+     * lower bound of the frequency of a value
+     */
+    int count(double v)
+    {
+        int []c=counters.get(v==0.0?0.0:v);
+        return c==null?0:c[0];
+    }
+
+    /*
+     * largest difference between the frequency of a value and its count
+     */
+    long maxError()
+    {
+        return n/(capacity+1);
+    }
+}
@@ -5,6 +5,23 @@
 
 package lfd;
 import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.StringTokenizer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 /**
  * Discretization is the process of converting numerical values into categorical values. We propose a new data-driven discretization technique called low frequency discretizer (LFD) that does not require any user input. LFD uses low frequency values as cut points and thus reduces the information loss due to discretization. It uses all other categorical attributes and any numerical attribute that has already been categorized. It considers that the influence of an attribute in discretization of another attribute depends on the strength of their relationship. 
  * 
@@ -28,21 +45,43 @@ public class LFD
     private int [] attrNType; // 1->numerical, 0->categorical, 2->class (categorical)
     private int noOfCatAttrs; //no. of categorical attributes
     private int noOfNumAttrs; //no. of Numerical attributes
-    private int [][]MV;  //Missing values, 0->no missing, 1->Missing
     private double []RA;// contains average correlations of numerical and categorical attributes
+    private double [][]etaMatrix;//etaMatrix[n][c]: correlation ratio of numerical attribute n and categorical attribute c
     private int []NumAttrs;//contains index of numerical attributes
     private int []CatAttrs;//contains index of categorical attributes
     private int []domainsize;//contains domain size of each attribute
-    private String [][]domainValues;//contains domain values of all attributes
+    private String [][]domainValues;//contains domain values of all attributes, sized to the domain
+    private double [][]numColumns;//parsed values of numerical attributes, NaN->missing
+    private int [][]catCodes;//dictionary codes of categorical attributes, -1->missing
+    private RankIndex []rankIndex;//distinct values and value ranks of numerical attributes, null in sketch mode
+    private ColumnStore store;//spilled codes of a streaming run, numerical attributes by rank; null->in memory
+    private double sketchEpsilon=0.0;//error bound of the sketches of numerical attributes, 0->exact
     private double []mean; //contains mean value of each numerical attribute
-    private double lambda;
-    private int ds;
-    private int []fqCount;
-    private double []d;
-    private double []iCutpoints;
-    private double []fCutpoints;
+    private double []etaDenominator; //total sum of squared deviations of each numerical attribute
     private long exeTime;
     private double pCatAttrs;
+    private int parallelism=Runtime.getRuntime().availableProcessors();//size of the fork/join pool, 1->serial
+    private ForkJoinPool pool;//fork/join pool of the current run, null->serial
+    private boolean speculative=false;//discretize the next-ranked attributes speculatively
+    private boolean lazyGreedy=true;//score only the candidates whose upper bound can win
+    private boolean coarseToFine=false;//select from thinned candidates first, then refine around the cuts
+    private double []objective;//weighted CAIM reached by the cut points of each numerical attribute
+    private boolean boundaryPruning=false;//drop candidates between blocks of the same class distribution
+    private AtomicLong prunedCandidates=new AtomicLong();//no. of candidates dropped as not a boundary point
+    private int sampleSize=0;//no. of records the cut points are fitted on, 0->all records
+    private boolean stratified=false;//sample every class in proportion to its size
+    private double [][]cutpoints;//final cut points of each numerical attribute
+    private int [][]usedCatAttrs;//categorical attributes each numerical attribute was discretized with
+    private double []validationObjective;//objective of the cut points on the validation slice, sampling only
+    private long timeBudget=0;//wall-clock budget of a run in milliseconds, 0->unlimited
+    private long runDeadline;//System.nanoTime() at which the budget of the run is spent
+    private boolean []truncated;//greedy selection of the attribute stopped by the time budget
+    private boolean planning=false;//choose the strategy of a run from a profile of the data set
+    private long memoryBudget=0;//bytes the planner may use, 0->maximum heap size
+    private String plan="";//plan of the last run
+    final static String className = lfd.LFD.class.getName();
+    private AtomicLong evaluations=new AtomicLong();//no. of candidates scored
+    private AtomicLong skippedEvaluations=new AtomicLong();//no. of candidates pruned by their bound
     
     /*
      * this method will discretize numerical attributes
@@ -54,308 +93,1994 @@ public class LFD
 
     public void runLFD(String attrFile, String dataFile,String outputFile)
     {
-        FileManager fileManager=new FileManager();
-        String [][]tmpAty=fileManager.readFileAs2DArray(new File(attrFile));
-        dataset=fileManager.readFileAs2DArray(new File(dataFile));
         double PercentageOfCategoricalAttrs=0.2;
-        runDiscretization(dataset,tmpAty,PercentageOfCategoricalAttrs);
-        arrayToFile(dataset, noOfRecords, noOfAttrs, outputFile); //write to output file
-        
+        try
+        {
+            String [][]tmpAty=MappedCsvReader.readRecords(new File(attrFile),1);
+            boolean []numerical=new boolean[tmpAty[0].length];
+            for(int i=0;i<numerical.length;i++)
+            {
+                numerical[i]=tmpAty[0][i].equals("1");
+            }
+            //the categorical columns are parsed when the eta, the planner or the sample needs them
+            ColumnarData data=new MappedCsvReader(numerical,numerical,parallelism).read(new File(dataFile));
+            runDiscretization(data,tmpAty,PercentageOfCategoricalAttrs);
+            writeDiscretized(dataFile,outputFile); //write to output file
+        }
+        catch(IOException e)
+        {
+            String error = "Error: IO Exception occured " + e;
+            Logger.getLogger(className).log(Level.WARNING,error);
+        }
     }
+/*
+ * Discretize a data file without loading it. The first pass over the file
+ * builds the dictionaries and value frequencies of the attributes and spills
+ * their codes to temporary files (ColumnStore); all later passes of the fit
+ * read the spilled codes. The last pass over the file writes the discretized
+ * records. Memory depends on the domain sizes, not on the number of records.
+ * The result is the same as the one of runLFD; sketch candidates, sampling
+ * and planning need the records in memory and are not used.
+ */
+public void runLFDStreaming(String attrFile, String dataFile, String outputFile)
+{
+        long start = System.currentTimeMillis();
+        double PercentageOfCategoricalAttrs=0.2;
+        startRun();
+        double epsilon=sketchEpsilon;
+        int size=sampleSize;
+        if(sketchEpsilon>0.0 || sampleSize>0 || planning)
+        {
+            Logger.getLogger(className).log(Level.WARNING,"Sketch candidates, sampling and planning are not available"
+                    +" in streaming mode, the exact fit is used");
+        }
+        sketchEpsilon=0.0;
+        sampleSize=0;
+        if(parallelism>1)pool=new ForkJoinPool(parallelism);
+        try
+        {
+            String [][]tmpAty=MappedCsvReader.readRecords(new File(attrFile),1);
+            initializeStreaming(dataFile,tmpAty,PercentageOfCategoricalAttrs);
+            fit();
+            writeDiscretized(dataFile,outputFile);
+        }
+        catch(IOException | UncheckedIOException e)
+        {
+            String error = "Error: IO Exception occured " + e;
+            Logger.getLogger(className).log(Level.WARNING,error);
+        }
+        finally
+        {
+            if(pool!=null)pool.shutdown();
+            pool=null;
+            if(store!=null)store.close();
+            store=null;
+            sketchEpsilon=epsilon;
+            sampleSize=size;
+        }
+        exeTime=System.currentTimeMillis()-start;
+}
+
 public void runDiscretization(String [][]datasetG,String [][]attrInfo, double PercentageOfAttrs)
 {
         long start = System.currentTimeMillis();
-        initialize(datasetG,attrInfo,PercentageOfAttrs);
+        startRun();
+        if(planning)
+        {
+            runPlanned(datasetG,attrInfo,PercentageOfAttrs);
+        }
+        else
+        {
+            execute(datasetG,attrInfo,PercentageOfAttrs);
+        }
+        long end = System.currentTimeMillis();
+        exeTime=end-start;
+}
+
+/*
+ * Discretize the columns of a data set read by MappedCsvReader. The numerical
+ * columns are discretized in place into the codes of their intervals; the
+ * records are written with the cut points afterwards, see transform.
+ * Categorical columns that are not parsed yet are materialized for the eta,
+ * the planner and the sample.
+ */
+void runDiscretization(ColumnarData data,String [][]attrInfo, double PercentageOfAttrs) throws IOException
+{
+        long start = System.currentTimeMillis();
+        startRun();
+        if(planning)
+        {
+            ExecutionPlanner planner=new ExecutionPlanner(data,attrInfo,PercentageOfAttrs);
+            int threads=parallelism, size=sampleSize;
+            double epsilon=sketchEpsilon;
+            usePlan(planner);
+            try
+            {
+                execute(data,attrInfo,PercentageOfAttrs);
+            }
+            finally
+            {
+                parallelism=threads;
+                sketchEpsilon=epsilon;
+                sampleSize=size;
+            }
+        }
+        else
+        {
+            execute(data,attrInfo,PercentageOfAttrs);
+        }
+        exeTime=System.currentTimeMillis()-start;
+}
+
+/*
+ * run the discretization of the columns with the current settings
+ */
+private void execute(ColumnarData data,String [][]attrInfo, double PercentageOfAttrs) throws IOException
+{
+        if(sampleSize>0 && sampleSize<data.noOfRecords)
+        {
+            runSampled(data,attrInfo,PercentageOfAttrs);
+            return;
+        }
+        if(parallelism>1)pool=new ForkJoinPool(parallelism);
+        try
+        {
+            initialize(data,attrInfo,PercentageOfAttrs);
+            calAvgEta(RA,data);
+            rankNAttributes(RA,NumAttrs,noOfNumAttrs);
+            discretization(RA,NumAttrs,noOfNumAttrs,CatAttrs, noOfCatAttrs);
+        }
+        finally
+        {
+            if(pool!=null)pool.shutdown();
+            pool=null;
+        }
+}
+
+/*
+ * reset the statistics of the last run and start the time budget
+ */
+private void startRun()
+{
+        runDeadline=timeBudget>0?System.nanoTime()+timeBudget*1000000L:Long.MAX_VALUE;
+        evaluations.set(0);
+        skippedEvaluations.set(0);
+        prunedCandidates.set(0);
+        validationObjective=null;
+        plan="";
+}
+
+/*
+ * Profile the data set, choose the strategy of the run within the memory and
+ * time budgets, print the plan and run it. The settings of this object are
+ * restored afterwards.
+ */
+private void runPlanned(String [][]datasetG,String [][]attrInfo, double PercentageOfAttrs)
+{
+    ExecutionPlanner planner=new ExecutionPlanner(datasetG,attrInfo,PercentageOfAttrs);
+    int threads=parallelism, size=sampleSize;
+    double epsilon=sketchEpsilon;
+    usePlan(planner);
+    try
+    {
+        execute(datasetG,attrInfo,PercentageOfAttrs);
+    }
+    finally
+    {
+        parallelism=threads;
+        sketchEpsilon=epsilon;
+        sampleSize=size;
+    }
+}
+
+/*
+ * choose the strategy of the profiled data set, print the plan and take over
+ * its settings
+ */
+private void usePlan(ExecutionPlanner planner)
+{
+    planner.choose(parallelism,lazyGreedy,memoryBudget>0?memoryBudget:Runtime.getRuntime().maxMemory(),timeBudget);
+    plan=planner.toString();
+    Logger.getLogger(className).log(Level.INFO,plan);
+    parallelism=planner.getThreads();
+    sketchEpsilon=planner.getSketchEpsilon();
+    sampleSize=planner.getSampleSize();
+}
+
+/*
+ * run the discretization with the current settings
+ */
+private void execute(String [][]datasetG,String [][]attrInfo, double PercentageOfAttrs)
+{
+        if(sampleSize>0 && sampleSize<datasetG.length)
+        {
+            runSampled(datasetG,attrInfo,PercentageOfAttrs);
+            return;
+        }
+        if(parallelism>1)pool=new ForkJoinPool(parallelism);
+        try
+        {
+            initialize(datasetG,attrInfo,PercentageOfAttrs);
+            fit();
+        }
+        finally
+        {
+            if(pool!=null)pool.shutdown();
+            pool=null;
+        }
+}
+
+/*
+ * rank and discretize the numerical attributes of the initialized data set
+ */
+private void fit()
+{
         calAvgEta(RA);//calculates average correlations of numerical and categorical attributes
         rankNAttributes(RA,NumAttrs,noOfNumAttrs);
         discretization(RA,NumAttrs,noOfNumAttrs,CatAttrs, noOfCatAttrs);
-        long end = System.currentTimeMillis();
-        exeTime=end-start;
 }
 
-public int []getIntervals()
+/*
+ * Fit the cut points on a random sample of the records, then discretize all
+ * records with them. The eta ranking, the candidate cut points and the greedy
+ * selection only see the sample. An equally large slice of the other records
+ * validates the cut points: the objective V of every attribute on the sample
+ * and on the validation slice are reported.
+ */
+private void runSampled(String [][]datasetG,String [][]attrInfo, double PercentageOfAttrs)
 {
-    return domainsize;
+    int [][]rows=sampleRows(datasetG,attrInfo);
+    LFD fitter=newWorker();
+    fitter.runDiscretization(copyRows(datasetG,rows[0]),attrInfo,PercentageOfAttrs);
+    LFD checker=null;
+    if(rows[1].length>0)
+    {
+        checker=newWorker();
+        checker.initialize(copyRows(datasetG,rows[1]),attrInfo,PercentageOfAttrs);
+    }
+    if(parallelism>1)pool=new ForkJoinPool(parallelism);
+    try
+    {
+        initialize(datasetG,attrInfo,PercentageOfAttrs);
+        useFit(fitter,checker,true);
+    }
+    finally
+    {
+        if(pool!=null)pool.shutdown();
+        pool=null;
+    }
 }
 
-public long getExeTime()
+/*
+ * runSampled on the columns of a data set. The sample and the validation
+ * slice are copied from the columns; the records are not initialized, they
+ * are written with the cut points afterwards, see transform.
+ */
+private void runSampled(ColumnarData data,String [][]attrInfo, double PercentageOfAttrs) throws IOException
 {
-    return exeTime;
+    int classAttr=classAttribute(attrInfo);
+    if(classAttr>=0)data.materialize(new int[]{classAttr});
+    int [][]rows=sampleRows(data.noOfRecords,classAttr>=0?data.catCodes[classAttr]:null);
+    ColumnarData []parts=copyRows(data,attrInfo,rows);
+    LFD fitter=newWorker();
+    fitter.runDiscretization(parts[0],attrInfo,PercentageOfAttrs);
+    LFD checker=null;
+    if(rows[1].length>0)
+    {
+        checker=newWorker();
+        checker.initialize(parts[1],attrInfo,PercentageOfAttrs);
+    }
+    pCatAttrs=PercentageOfAttrs;
+    dataset=null;
+    noOfRecords=data.noOfRecords;
+    noOfAttrs=data.noOfAttrs;
+    initAttributes(attrInfo);
+    for(int i=0;i<noOfAttrs;i++)
+    {
+        if(attrNType[i]==0 && data.catCodes[i]!=null)
+        {
+            domainValues[i]=data.domainValues[i];
+            domainsize[i]=domainValues[i].length;
+        }
+    }
+    useFit(fitter,checker,false);
 }
 
 /*
- * the method initializes the variables of DACUF
+ * Take over the cut points the fitter found on the sample, their objective on
+ * the sample and on the validation slice of the checker (null->no slice),
+ * and the statistics of the fit.
+ *
+ * @param discretize discretize the records of this object with the cut points
  */
-public void initialize(String [][]datasetG,String [][]attrInfo, double PercentageOfAttrs)
+private void useFit(LFD fitter, LFD checker, boolean discretize)
+{
+    evaluations.addAndGet(fitter.getEvaluations());
+    skippedEvaluations.addAndGet(fitter.getSkippedEvaluations());
+    prunedCandidates.addAndGet(fitter.getPrunedCandidates());
+    if(checker!=null)validationObjective=new double[noOfAttrs];
+    NumAttrs=fitter.NumAttrs.clone();
+    for(int j=0;j<noOfNumAttrs;j++)
     {
-        pCatAttrs=PercentageOfAttrs;
-        dataset=datasetG;
-        noOfRecords=dataset.length;
-        noOfAttrs=dataset[0].length;
-        attrNType=new int[noOfAttrs];
-        attrType=new String[noOfAttrs];
-        attrNames=new String[noOfAttrs];
-        domainsize=new int[noOfAttrs];
-        mean=new double[noOfAttrs];
-        domainValues=new String[noOfAttrs][noOfRecords];
-        MV=new int[noOfRecords][noOfAttrs];
-        fqCount=new int[noOfRecords];
-        d=new double[noOfRecords];
-        noOfCatAttrs=0;
-        noOfNumAttrs=0;
-        for(int i=0; i<noOfAttrs;i++)
-         {
-            attrNames[i]=attrInfo[1][i];
-            if(attrInfo[0][i].equals("1"))
-             {
-                 attrNType[i]=1;
-                 attrType[i]="n";
-                 noOfNumAttrs++;
-             }
-            else
-             {
-                 attrType[i]="c";
-                 attrNType[i]=0;
-                 noOfCatAttrs++;
-             }
-         }
-        for(int i=0;i<noOfRecords;i++)
+        int a=NumAttrs[j];
+        double []fCutpoints=fitter.cutpoints[a];
+        usedCatAttrs[a]=fitter.usedCatAttrs[a];
+        truncated[a]=fitter.truncated[a];
+        objective[a]=fitter.objectiveOf(a,usedCatAttrs[a],fCutpoints);
+        if(checker!=null)
         {
-            for(int j=0;j<noOfAttrs;j++)
-            {
-                MV[i][j]=isMissing(dataset[i][j]);
-            }
+            validationObjective[a]=checker.objectiveOf(a,usedCatAttrs[a],fCutpoints);
+            checker.applyCutpoints(a,fCutpoints);
         }
-        
-        RA=new double[noOfNumAttrs];
-        NumAttrs=new int[noOfNumAttrs];
-        CatAttrs=new int[noOfCatAttrs];
-        int tj=0,tc=0;
-        for(int i=0; i<noOfAttrs;i++)
-         {
-            if(attrNType[i]==1)
-            {
-               NumAttrs[tj]=i;
-               RA[tj]=0.0;
-               tj++;
-               domainsize[i]=0;
-               mean[i]=calMean(i);
-            }
-            else{
-                CatAttrs[tc]=i;
-                tc++;
-                domainsize[i]=findDomainSize(i);
-                mean[i]=0.0;
-             }
+        if(discretize)
+        {
+            applyCutpoints(a,fCutpoints);
+        }
+        else
+        {
+            cutpoints[a]=fCutpoints;
+            attrNType[a]=0;
+            domainsize[a]=fCutpoints.length-1;
         }
-     
     }
+}
 
 /*
- * Distrization
+ * an LFD with the settings of this one, fitting on all its records
  */
-private void discretization(double []Ra, int []nAttrs, int nA,  int []cAttrs, int nC)
+private LFD newWorker()
 {
-    for(int j=0;j<nA;j++)
+    LFD worker=new LFD();
+    worker.parallelism=parallelism;
+    worker.speculative=speculative;
+    worker.lazyGreedy=lazyGreedy;
+    worker.coarseToFine=coarseToFine;
+    worker.boundaryPruning=boundaryPruning;
+    worker.sketchEpsilon=sketchEpsilon;
+    worker.timeBudget=timeBudget;
+    return worker;
+}
+
+/*
+ * the class attribute (type 2 in the attribute file) if the sample is
+ * stratified, else -1
+ */
+private int classAttribute(String [][]attrInfo)
+{
+    int classAttr=-1;
+    if(stratified)
     {
-        int currentAttribute=nAttrs[j];
-        frequencyDistribution(currentAttribute);
-        SortAsc(d,fqCount,ds);
-        iCutpoints=new double[ds];
-        int ticp=findInitialCutpoints(d,fqCount,ds,iCutpoints,lambda);
-        int []fcFlg=new int[ticp];
-        for(int t=0; t<ticp;t++)
+        for(int i=0;i<attrInfo[0].length && classAttr<0;i++)
         {
-            fcFlg[t]=0;
+            if(attrInfo[0][i].equals("2"))classAttr=i;
         }
-        fcFlg[0]=1;fcFlg[ticp-1]=1;
-        int fcp=2;
-        double V=0.0;
-        int tau=1;
-        while(tau==1)
+        if(classAttr<0)
+        {
+            Logger.getLogger(className).log(Level.WARNING,"No class attribute (type 2), the sample is uniform");
+        }
+    }
+    return classAttr;
+}
+
+/*
+ * sampleRows of the records, stratified by the values of the class attribute
+ */
+int [][]sampleRows(String [][]datasetG, String [][]attrInfo)
+{
+    int classAttr=classAttribute(attrInfo);
+    int []classes=null;
+    if(classAttr>=0)
+    {
+        HashMap<String,Integer> codes=new HashMap<>();
+        classes=new int[datasetG.length];
+        for(int i=0;i<datasetG.length;i++)
         {
-            double mV=0.0;
-            int mt=-1;
-            for(int t=0; t<ticp;t++)
+            Integer c=codes.get(datasetG[i][classAttr]);
+            if(c==null)
             {
-               if(fcFlg[t]==0)
-               {
-                  int nc=fcp+1;
-                  double []tCP=new double[nc];
-                  int y=0;
-                  for(int k=0; k<ticp;k++)
-                  {
-                       if(fcFlg[k]==1||k==t)
-                       {
-                            tCP[y]=iCutpoints[k];y++;
-                       }
-                  }
-                  double tv=0.0, twCaim=0.0, tUn=0.0;
-                  int []catAttr=findCatAttrs(currentAttribute);
-                  int numCat=catAttr.length;
-                  for(int c=0;c<numCat;c++)
-                  {
-                      int cIndex=catAttr[c];
-                      if(attrNType[cIndex]==0)
-                      {
-                          double []cu=CAIM_Uncertainty(currentAttribute, cIndex, tCP, nc);
-                          twCaim+=cu[1]*cu[0];
-                          tUn+=cu[1];
-                      }
-                  }
-                  if(tUn>0.0)tv=twCaim/tUn;
-                  if(tv>mV)
-                  {
-                     mV=tv;mt=t;
-                  }
+                c=codes.size();
+                codes.put(datasetG[i][classAttr],c);
+            }
+            classes[i]=c;
+        }
+    }
+    return sampleRows(datasetG.length,classes);
+}
 
-               }
+/*
+ * Draw the sample and the validation slice of n records, disjoint and in file
+ * order. Both are uniform, or stratified by the class of every record: every
+ * class gets its share of the sample and of the slice. A fixed seed makes the
+ * draw repeatable.
+ *
+ * @param classes class code of every record (-1->missing, a class of its
+ * own), null->uniform
+ * @return rows[0]->sample, rows[1]->validation slice
+ */
+int [][]sampleRows(int n, int []classes)
+{
+    int []stratum=new int[n];
+    int noOfStrata=1;
+    if(classes!=null)
+    {
+        //strata in order of first appearance
+        HashMap<Integer,Integer> strata=new HashMap<>();
+        for(int i=0;i<n;i++)
+        {
+            Integer s=strata.get(classes[i]);
+            if(s==null)
+            {
+                s=strata.size();
+                strata.put(classes[i],s);
             }
-            if(mV>V &&(mt>=0 && mt<ticp))
+            stratum[i]=s;
+        }
+        noOfStrata=strata.size();
+    }
+    int []size=new int[noOfStrata];
+    for(int i=0;i<n;i++)
+    {
+        size[stratum[i]]++;
+    }
+    int sampled=sampleSize, validated=Math.min(sampleSize,n-sampleSize);
+    //the slice is shared over the records left in the strata, so no record is in both parts
+    int []toSample=share(size,n,sampled);
+    int []left=new int[noOfStrata];
+    for(int s=0;s<noOfStrata;s++)
+    {
+        left[s]=size[s]-toSample[s];
+    }
+    int []toValidate=share(left,n-sampled,validated);
+    //selection sampling of both parts in one pass, then a random split per stratum
+    Random random=new Random(1);
+    int [][]picked=new int[noOfStrata][];
+    int []noPicked=new int[noOfStrata], remaining=size.clone();
+    for(int s=0;s<noOfStrata;s++)
+    {
+        picked[s]=new int[toSample[s]+toValidate[s]];
+    }
+    for(int i=0;i<n;i++)
+    {
+        int s=stratum[i];
+        int need=picked[s].length-noPicked[s];
+        if(need>0 && random.nextInt(remaining[s])<need)
+        {
+            picked[s][noPicked[s]]=i;noPicked[s]++;
+        }
+        remaining[s]--;
+    }
+    for(int s=0;s<noOfStrata;s++)
+    {
+        if(noPicked[s]!=picked[s].length)
+        {
+            throw new IllegalStateException("Stratum "+s+": "+noPicked[s]+" of "+picked[s].length+" records picked");
+        }
+    }
+    int [][]rows=new int[2][];
+    rows[0]=new int[sampled];
+    rows[1]=new int[validated];
+    int ns=0, nv=0;
+    for(int s=0;s<noOfStrata;s++)
+    {
+        int []p=picked[s];
+        for(int i=p.length-1;i>0;i--)
+        {
+            int r=random.nextInt(i+1);
+            int tmp=p[i];p[i]=p[r];p[r]=tmp;
+        }
+        for(int i=0;i<p.length;i++)
+        {
+            if(i<toSample[s])
             {
-                fcFlg[mt]=1;fcp++;
-                V=mV;
+                rows[0][ns]=p[i];ns++;
             }
-            else{
-                tau = 0;
+            else
+            {
+                rows[1][nv]=p[i];nv++;
             }
         }
-       fCutpoints=new double[fcp];
-       int fc=0;
-       for(int t=0; t<ticp;t++)
-       {
-               if(fcFlg[t]==1)
-               {
-                fCutpoints[fc]=iCutpoints[t];fc++;
-               }
+    }
+    Arrays.sort(rows[0]);
+    Arrays.sort(rows[1]);
+    return rows;
+}
+
+/*
+ * split total over the strata in proportion to their sizes, by largest
+ * remainder; no stratum gets more than its size, total must not exceed n,
+ * the sum of the sizes
+ */
+private static int []share(int []size, int n, int total)
+{
+    int k=size.length;
+    int []part=new int[k];
+    double []rest=new double[k];
+    int given=0;
+    if(total<=0)return part;
+    for(int s=0;s<k;s++)
+    {
+        double exact=(double)total*size[s]/n;
+        part[s]=Math.min((int)Math.floor(exact),size[s]);
+        rest[s]=exact-part[s];
+        given+=part[s];
+    }
+    while(given<total)
+    {
+        int best=-1;
+        for(int s=0;s<k;s++)
+        {
+            if(part[s]<size[s] && (best<0 || rest[s]>rest[best]))best=s;
         }
-        discretizeX(currentAttribute,fCutpoints,fcp);
-        attrNType[currentAttribute]=0;
-        domainsize[currentAttribute]=fcp-1;
-        for(int t=0; t<fcp-1;t++)
+        part[best]++;rest[best]=-1.0;given++;
+    }
+    return part;
+}
+
+/*
+ * copies of the given rows, discretization writes into the rows
+ */
+private static String [][]copyRows(String [][]datasetG, int []rows)
+{
+    String [][]copy=new String[rows.length][];
+    for(int i=0;i<rows.length;i++)
+    {
+        copy[i]=datasetG[rows[i]].clone();
+    }
+    return copy;
+}
+
+/*
+ * Copies of the given rows of the columns, parts[p] of rows[p]. The
+ * categorical columns are parsed in batches of up to a quarter of the heap if
+ * they are not parsed yet, and dropped again after copying. The codes of a
+ * part are numbered in order of first appearance in it, as findDomainSize
+ * numbers them.
+ */
+private static ColumnarData []copyRows(ColumnarData data, String [][]attrInfo, int [][]rows) throws IOException
+{
+    ColumnarData []parts=new ColumnarData[rows.length];
+    for(int p=0;p<rows.length;p++)
+    {
+        parts[p]=new ColumnarData(data.noOfAttrs);
+        parts[p].noOfRecords=rows[p].length;
+    }
+    int []cAttrs=new int[data.noOfAttrs];
+    int nC=0;
+    for(int a=0;a<data.noOfAttrs;a++)
+    {
+        if(attrInfo[0][a].equals("1"))
+        {
+            for(int p=0;p<rows.length;p++)
+            {
+                double []col=new double[rows[p].length];
+                for(int i=0;i<col.length;i++)
+                {
+                    col[i]=data.numColumns[a][rows[p][i]];
+                }
+                parts[p].numColumns[a]=col;
+            }
+        }
+        else
+        {
+            cAttrs[nC]=a;nC++;
+        }
+    }
+    long perColumn=4L*Math.max(data.noOfRecords,1);
+    int batch=(int)Math.max(1,Math.min(nC,Runtime.getRuntime().maxMemory()/4/perColumn));
+    for(int from=0;from<nC;from+=batch)
+    {
+        int []attrs=Arrays.copyOfRange(cAttrs,from,Math.min(from+batch,nC));
+        boolean []parsed=new boolean[attrs.length];
+        for(int k=0;k<attrs.length;k++)
+        {
+            parsed[k]=data.catCodes[attrs[k]]!=null;
+        }
+        data.materialize(attrs);
+        for(int k=0;k<attrs.length;k++)
+        {
+            int a=attrs[k];
+            for(int p=0;p<rows.length;p++)
+            {
+                copyCodes(data,a,rows[p],parts[p]);
+            }
+            if(!parsed[k] && data.source!=null)
+            {
+                data.catCodes[a]=null;
+                data.domainValues[a]=null;
+            }
+        }
+    }
+    return parts;
+}
+
+private static void copyCodes(ColumnarData data, int a, int []rows, ColumnarData part)
+{
+    int []codes=data.catCodes[a];
+    String []values=data.domainValues[a];
+    int []code=new int[values.length];
+    Arrays.fill(code,-1);
+    int []col=new int[rows.length];
+    List<String> partValues=new ArrayList<>();
+    for(int i=0;i<rows.length;i++)
+    {
+        int c=codes[rows[i]];
+        if(c>=0)
+        {
+            if(code[c]<0)
+            {
+                code[c]=partValues.size();
+                partValues.add(values[c]);
+            }
+            c=code[c];
+        }
+        col[i]=c;
+    }
+    part.catCodes[a]=col;
+    part.domainValues[a]=partValues.toArray(new String[0]);
+}
+
+/*
+ * Objective V of given cut points of a numerical attribute: the weighted CAIM
+ * of the categorical attributes over the intervals of the cut points.
+ */
+private double objectiveOf(int nAttr, int []catAttr, double []fCutpoints)
+{
+    int fcp=fCutpoints.length;
+    int NOI=fcp-1;
+    //interval j is block j+1 of the scorers, block 0 stays empty
+    int []blocks=new int[noOfRecords];
+    double []nCol=numColumns[nAttr];
+    for(int i=0;i<noOfRecords;i++)
+    {
+        int j=Double.isNaN(nCol[i])?-1:findInterval(nCol[i],fCutpoints,NOI);
+        blocks[i]=j>=0?j+1:-1;
+    }
+    int noOfScorers=0;
+    int [][]cCols=new int[catAttr.length][];
+    int []cSizes=new int[catAttr.length];
+    for(int c=0;c<catAttr.length;c++)
+    {
+        if(attrNType[catAttr[c]]==0)
+        {
+            cCols[noOfScorers]=catCodes[catAttr[c]];
+            cSizes[noOfScorers]=domainsize[catAttr[c]];
+            noOfScorers++;
+        }
+    }
+    if(noOfScorers==0 || fcp<2)return 0.0;
+    int []fcFlg=new int[fcp];
+    Arrays.fill(fcFlg,1);
+    CutpointScorer []scorers=CutpointScorer.create(blocks,Arrays.copyOf(cCols,noOfScorers),
+            Arrays.copyOf(cSizes,noOfScorers),fcp,fcFlg,pool);
+    double tv=0.0, twCaim=0.0, tUn=0.0;
+    for(int c=0;c<noOfScorers;c++)
+    {
+        double []cu=scorers[c].scoreAccepted();
+        twCaim+=cu[1]*cu[0];
+        tUn+=cu[1];
+    }
+    if(tUn>0.0)tv=twCaim/tUn;
+    return tv;
+}
+
+/*
+ * fit the cut points on a sample of the given no. of records, 0 fits on all
+ * records. A stratified sample takes every class of the class attribute in
+ * proportion to its size.
+ */
+public void setSampling(int noOfRecords, boolean stratifiedByClass)
+{
+    sampleSize=Math.max(noOfRecords,0);
+    stratified=stratifiedByClass;
+}
+
+/*
+ * Let a planner choose the strategy of every run: exact serial, exact
+ * parallel, sketch candidates or sampling, from a profile of the data set and
+ * estimates of their time and memory. The time budget is the one of
+ * setTimeBudget; memoryBytes=0 allows the maximum heap size. The plan is
+ * logged before the discretization starts.
+ */
+public void setPlanning(boolean on, long memoryBytes)
+{
+    planning=on;
+    memoryBudget=Math.max(memoryBytes,0L);
+}
+
+/*
+ * the plan of the last run, empty if it was not planned
+ */
+public String getPlan()
+{
+    return plan;
+}
+
+/*
+ * Wall-clock budget of a run in milliseconds, 0 is unlimited. The budget is
+ * shared by the numerical attributes in rank order; an attribute whose share
+ * runs out keeps the cut points accepted so far, and is marked as truncated in
+ * the objective report.
+ */
+public void setTimeBudget(long millis)
+{
+    timeBudget=Math.max(millis,0L);
+}
+
+/*
+ * set the number of threads used by the fork/join pool, 1 runs everything serially.
+ * The results do not depend on the number of threads.
+ */
+public void setParallelism(int noOfThreads)
+{
+    parallelism=noOfThreads<1?1:noOfThreads;
+}
+
+public int getParallelism()
+{
+    return parallelism;
+}
+
+/*
+ * in parallel mode, start discretizing the next-ranked numerical attributes while
+ * the current one is running. The results and the counters of evaluations
+ * are the same as without speculation: a discarded speculation stops before
+ * its next candidates and its work is not counted.
+ */
+public void setSpeculative(boolean on)
+{
+    speculative=on;
+}
+
+/*
+ * choose the candidate of every greedy step from the candidates whose upper
+ * bound can still beat the best score (default), or score all candidates.
+ * Both select the same cut points.
+ */
+public void setLazyGreedy(boolean on)
+{
+    lazyGreedy=on;
+}
+
+/*
+ * select the cut points from a thinned candidate set first and then only
+ * from the candidates around the accepted cuts, instead of from all
+ * candidates (exact). Faster on attributes with many low frequency values,
+ * the objective V reached may be lower than the exact one.
+ */
+public void setCoarseToFine(boolean on)
+{
+    coarseToFine=on;
+}
+
+/*
+ * Find the candidate cut points from sketches in fixed memory instead of the
+ * exact distinct values: a KLL quantile sketch gives the values every
+ * epsilon*n records, a Misra-Gries summary drops the frequent ones among them
+ * and a HyperLogLog count of the distinct values gives lambda. Ranks and
+ * frequencies are off by about epsilon*n, 0 turns the sketches off.
+ *
+ * Two approximations remain. Only the candidate search runs in fixed memory:
+ * the column is still parsed into a double per record, and every selection
+ * finds the block of every record in an int per record. The Misra-Gries count
+ * is a lower bound of the frequency, so a value up to epsilon*n records above
+ * lambda can still pass as a low frequency candidate.
+ */
+public void setSketch(double epsilon)
+{
+    sketchEpsilon=epsilon>0.0?Math.min(epsilon,0.5):0.0;
+}
+
+/*
+ * Before the greedy search, drop the candidates that are not boundary points:
+ * the blocks on both sides of the candidate have the same relative class
+ * distribution over every selected categorical attribute. Splitting there
+ * leaves the CAIM sums unchanged while adding an interval, so such candidates
+ * rarely win. The weighted CAIM has no boundary point theorem, so the cut
+ * points can differ from the exact selection.
+ */
+public void setBoundaryPruning(boolean on)
+{
+    boundaryPruning=on;
+}
+
+/*
+ * no. of candidate cut points dropped by boundary pruning in the last run
+ */
+public long getPrunedCandidates()
+{
+    return prunedCandidates.get();
+}
+
+/*
+ * the numerical attributes in the order of discretization, with their no. of
+ * intervals and the objective V (weighted CAIM) their cut points reach
+ */
+public String getObjectiveReport()
+{
+    StringBuilder report=new StringBuilder();
+    for(int j=0;j<noOfNumAttrs;j++)
+    {
+        int a=NumAttrs[j];
+        report.append(attrNames[a]).append(": ").append(domainsize[a]).append(" intervals, V=")
+                .append(objective[a]);
+        if(validationObjective!=null)
+        {
+            report.append(" on the sample, V=").append(validationObjective[a]).append(" on the validation slice");
+        }
+        if(truncated[a])report.append(" (truncated by the time budget)");
+        report.append("\n");
+    }
+    return report.toString();
+}
+
+/*
+ * no. of candidate cut points scored in the last run
+ */
+public long getEvaluations()
+{
+    return evaluations.get();
+}
+
+/*
+ * no. of candidate cut points the lazy greedy selection did not need to score
+ * in the last run
+ */
+public long getSkippedEvaluations()
+{
+    return skippedEvaluations.get();
+}
+
+public int []getIntervals()
+{
+    return domainsize;
+}
+
+public long getExeTime()
+{
+    return exeTime;
+}
+
+/*
+ * the method initializes the variables of DACUF
+ */
+public void initialize(String [][]datasetG,String [][]attrInfo, double PercentageOfAttrs)
+    {
+        pCatAttrs=PercentageOfAttrs;
+        dataset=datasetG;
+        noOfRecords=dataset.length;
+        noOfAttrs=dataset[0].length;
+        initAttributes(attrInfo);
+        int tj=0,tc=0;
+        for(int i=0; i<noOfAttrs;i++)
+         {
+            if(attrNType[i]==1)
+            {
+               NumAttrs[tj]=i;
+               RA[tj]=0.0;
+               tj++;
+               domainsize[i]=0;
+               numColumns[i]=parseNumColumn(i);
+               if(sketchEpsilon<=0.0)rankIndex[i]=new RankIndex(numColumns[i],pool!=null);
+               mean[i]=calMean(i);
+               etaDenominator[i]=eta_denominator(i);
+            }
+            else{
+                CatAttrs[tc]=i;
+                tc++;
+                domainsize[i]=findDomainSize(i);
+                mean[i]=0.0;
+             }
+        }
+     
+    }
+
+/*
+ * Initialize from the columns of a data set, the parsed values and the
+ * dictionary codes are used as they are. A categorical column that is not
+ * parsed yet has domain size 0 until it is materialized.
+ */
+void initialize(ColumnarData data,String [][]attrInfo, double PercentageOfAttrs)
+    {
+        pCatAttrs=PercentageOfAttrs;
+        dataset=null;
+        noOfRecords=data.noOfRecords;
+        noOfAttrs=data.noOfAttrs;
+        initAttributes(attrInfo);
+        int tj=0,tc=0;
+        for(int i=0; i<noOfAttrs;i++)
+         {
+            if(attrNType[i]==1)
+            {
+               NumAttrs[tj]=i;
+               RA[tj]=0.0;
+               tj++;
+               domainsize[i]=0;
+               numColumns[i]=data.numColumns[i];
+               if(sketchEpsilon<=0.0)rankIndex[i]=new RankIndex(numColumns[i],pool!=null);
+               mean[i]=calMean(i);
+               etaDenominator[i]=eta_denominator(i);
+            }
+            else{
+                CatAttrs[tc]=i;
+                tc++;
+                catCodes[i]=data.catCodes[i];
+                domainValues[i]=data.domainValues[i];
+                domainsize[i]=catCodes[i]!=null?domainValues[i].length:0;
+                mean[i]=0.0;
+             }
+        }
+    }
+
+/*
+ * Initialize from the data file in one pass. Categorical values are
+ * dictionary-encoded in order of first appearance as in findDomainSize.
+ * Numerical values are dictionary-encoded too and their codes are remapped to
+ * the ranks of the values afterwards. The codes are spilled to the column store.
+ */
+private void initializeStreaming(String dataFile, String [][]attrInfo, double PercentageOfAttrs) throws IOException
+{
+    pCatAttrs=PercentageOfAttrs;
+    dataset=null;
+    try(BufferedReader in=new BufferedReader(new FileReader(dataFile)))
+    {
+        String currLine=in.readLine();
+        if(currLine==null)throw new IOException("The file "+dataFile+" is empty");
+        noOfAttrs=new StringTokenizer(currLine, " ,\t\n\r\f").countTokens();
+        store=new ColumnStore(noOfAttrs);
+        initAttributes(attrInfo);
+        List<Map<String,Integer>> catDictionary=new ArrayList<>(noOfAttrs);
+        List<Map<Double,Integer>> numDictionary=new ArrayList<>(noOfAttrs);
+        double [][]values=new double[noOfAttrs][];
+        int [][]counts=new int[noOfAttrs][];
+        for(int i=0;i<noOfAttrs;i++)
+        {
+            if(attrNType[i]==1)
+            {
+                numDictionary.add(new HashMap<>());
+                catDictionary.add(null);
+                values[i]=new double[16];
+                counts[i]=new int[16];
+            }
+            else
+            {
+                numDictionary.add(null);
+                catDictionary.add(new HashMap<>());
+            }
+        }
+        int []codes=new int[noOfAttrs];
+        for(;currLine!=null;currLine=in.readLine())
+        {
+            StringTokenizer tokenizer=new StringTokenizer(currLine, " ,\t\n\r\f");
+            if(!tokenizer.hasMoreTokens())continue;
+            for(int i=0;i<noOfAttrs;i++)
+            {
+                String v=tokenizer.nextToken();
+                codes[i]=-1;
+                if(isMissing(v)==1)continue;
+                if(attrNType[i]==1)
+                {
+                    Double x=Double.parseDouble(v);
+                    Integer code=numDictionary.get(i).get(x);
+                    if(code==null)
+                    {
+                        code=numDictionary.get(i).size();
+                        numDictionary.get(i).put(x, code);
+                        if(code==values[i].length)
+                        {
+                            values[i]=Arrays.copyOf(values[i],2*code);
+                            counts[i]=Arrays.copyOf(counts[i],2*code);
+                        }
+                        values[i][code]=x;
+                    }
+                    counts[i][code]++;
+                    codes[i]=code;
+                }
+                else
+                {
+                    Integer code=catDictionary.get(i).get(v);
+                    if(code==null)
+                    {
+                        code=catDictionary.get(i).size();
+                        catDictionary.get(i).put(v, code);
+                    }
+                    codes[i]=code;
+                }
+            }
+            store.append(codes);
+        }
+        store.finish();
+        noOfRecords=store.getNoOfRecords();
+        int tj=0,tc=0;
+        for(int i=0; i<noOfAttrs;i++)
+        {
+            if(attrNType[i]==1)
+            {
+                NumAttrs[tj]=i;
+                RA[tj]=0.0;
+                tj++;
+                domainsize[i]=0;
+                int ds=numDictionary.get(i).size();
+                numDictionary.set(i,null);
+                RankIndex idx=new RankIndex(values[i],counts[i],ds);
+                int []ranks=new int[ds];
+                for(int code=0;code<ds;code++)
+                {
+                    ranks[code]=idx.rankOf(values[i][code]);
+                }
+                rankIndex[i]=idx;
+                store.remap(i,ranks);
+                values[i]=null;counts[i]=null;
+                mean[i]=calMean(i);
+                etaDenominator[i]=eta_denominator(i);
+            }
+            else
+            {
+                CatAttrs[tc]=i;
+                tc++;
+                String []domain=new String[catDictionary.get(i).size()];
+                for(String key:catDictionary.get(i).keySet())
+                {
+                    domain[catDictionary.get(i).get(key)]=key;
+                }
+                domainValues[i]=domain;
+                domainsize[i]=domain.length;
+                mean[i]=0.0;
+            }
+        }
+    }
+}
+
+/*
+ * Discretize a data file with the cut points of the last run, in the format
+ * of arrayToFile. The records pass through a TransformPipeline, so the file is
+ * never loaded. "-" reads the standard input or writes the standard output.
+ */
+public void transform(String dataFile, String outputFile)
+{
+    if(cutpoints==null)
+    {
+        Logger.getLogger(className).log(Level.WARNING,"No cut points, discretize a data set first");
+        return;
+    }
+    try
+    {
+        writeDiscretized(dataFile,outputFile);
+    }
+    catch(IOException e)
+    {
+        String error = "Error: IO Exception occured " + e;
+        Logger.getLogger(className).log(Level.WARNING,error);
+    }
+}
+
+void writeDiscretized(String dataFile, String outputFile) throws IOException
+{
+    boolean stdIn=dataFile.equals("-"), stdOut=outputFile.equals("-");
+    BufferedReader in=new BufferedReader(stdIn?new InputStreamReader(System.in):new FileReader(dataFile),1<<16);
+    Writer out=new BufferedWriter(stdOut?new OutputStreamWriter(System.out):new FileWriter(outputFile),1<<16);
+    try
+    {
+        new TransformPipeline(parallelism,this::discretizeLine).run(in,out);
+    }
+    finally
+    {
+        if(!stdIn)in.close();
+        if(stdOut)
+        {
+            out.flush();
+        }
+        else
+        {
+            out.close();
+        }
+    }
+}
+
+/*
+ * a record of the data file with its numerical values replaced by their
+ * intervals, null for a blank line. A value below or above the fitted range
+ * falls into the first or last interval, NaN becomes missing. A constant
+ * attribute has no interval (its one candidate is the first cut point and the
+ * second is left 0), its values stay empty as in the original output.
+ */
+private String discretizeLine(String line)
+{
+    StringBuilder rec=new StringBuilder(line.length()+2*noOfAttrs);
+    int len=line.length(), p=0, i=0;
+    for(;i<noOfAttrs;i++)
+    {
+        while(p<len && isDelimiter(line.charAt(p)))p++;
+        if(p==len)break;
+        int from=p;
+        while(p<len && !isDelimiter(line.charAt(p)))p++;
+        if(attrType[i].equals("n"))
+        {
+            String v=line.substring(from,p);
+            if(isMissing(v)==0)
+            {
+                double []cut=cutpoints[i];
+                int NOI=cut.length-1;
+                double x=Double.parseDouble(v);
+                if(Double.isNaN(x))
+                {
+                    rec.append('?');
+                }
+                else if(NOI>0 && cut[0]<=cut[NOI])
+                {
+                    rec.append(x<cut[0]?0:x>cut[NOI]?NOI-1:findInterval(x,cut,NOI));
+                }
+            }
+            else
+            {
+                rec.append(v);
+            }
+        }
+        else
+        {
+            //a categorical value is copied, it is never parsed
+            rec.append(line,from,p);
+        }
+        rec.append(", ");
+    }
+    if(i==0)return null;
+    if(i<noOfAttrs)throw new IllegalArgumentException("The record has "+i+" of "+noOfAttrs+" values: "+line);
+    while(p<len && isDelimiter(line.charAt(p)))p++;
+    if(p<len)throw new IllegalArgumentException("The record has more than "+noOfAttrs+" values: "+line);
+    return rec.toString();
+}
+
+/*
+ * a character of " ,\t\n\r\f", the separators of the values of a record
+ */
+private static boolean isDelimiter(char c)
+{
+    return c==' ' || c==',' || c=='\t' || c=='\n' || c=='\r' || c=='\f';
+}
+
+/*
+ * attribute types and names, and the arrays of a run over noOfAttrs attributes
+ */
+private void initAttributes(String [][]attrInfo)
+    {
+        attrNType=new int[noOfAttrs];
+        attrType=new String[noOfAttrs];
+        attrNames=new String[noOfAttrs];
+        domainsize=new int[noOfAttrs];
+        mean=new double[noOfAttrs];
+        etaDenominator=new double[noOfAttrs];
+        objective=new double[noOfAttrs];
+        cutpoints=new double[noOfAttrs][];
+        usedCatAttrs=new int[noOfAttrs][];
+        truncated=new boolean[noOfAttrs];
+        domainValues=new String[noOfAttrs][];
+        numColumns=new double[noOfAttrs][];
+        catCodes=new int[noOfAttrs][];
+        rankIndex=new RankIndex[noOfAttrs];
+        noOfCatAttrs=0;
+        noOfNumAttrs=0;
+        for(int i=0; i<noOfAttrs;i++)
+         {
+            attrNames[i]=attrInfo[1][i];
+            if(attrInfo[0][i].equals("1"))
+             {
+                 attrNType[i]=1;
+                 attrType[i]="n";
+                 noOfNumAttrs++;
+             }
+            else
+             {
+                 attrType[i]="c";
+                 attrNType[i]=0;
+                 noOfCatAttrs++;
+             }
+         }
+        RA=new double[noOfNumAttrs];
+        etaMatrix=new double[noOfAttrs][];
+        NumAttrs=new int[noOfNumAttrs];
+        CatAttrs=new int[noOfCatAttrs];
+    }
+
+/*
+ * Distrization
+ */
+private void discretization(double []Ra, int []nAttrs, int nA,  int []cAttrs, int nC)
+{
+    Speculation []spec=new Speculation[nA];
+    int window=(speculative && pool!=null)?parallelism:0;
+    for(int j=0;j<nA;j++)
+    {
+        int currentAttribute=nAttrs[j];
+        for(int q=j+1;q<nA && q<=j+window;q++)
+        {
+            if(spec[q]==null)spec[q]=speculate(nAttrs[q],q-j,attributeDeadline(j,nA));
+        }
+        int []catAttr=findCatAttrs(currentAttribute);
+        CutpointFit fit;
+        if(spec[j]!=null && Arrays.equals(spec[j].catAttr,catAttr))
+        {
+            fit=spec[j].task.join();
+        }
+        else
+        {
+            if(spec[j]!=null)spec[j].cancel();
+            fit=fitCutpoints(currentAttribute,catAttr,attributeDeadline(j,nA),new CutpointFit());
+        }
+        evaluations.addAndGet(fit.evaluations);
+        skippedEvaluations.addAndGet(fit.skippedEvaluations);
+        prunedCandidates.addAndGet(fit.prunedCandidates);
+        objective[currentAttribute]=fit.V;
+        if(fit.truncated)
+        {
+            truncated[currentAttribute]=true;
+            Logger.getLogger(className).log(Level.INFO,attrNames[currentAttribute]+": time budget reached with "
+                    +(fit.cutpoints.length-1)+" intervals, V="+fit.V);
+        }
+        usedCatAttrs[currentAttribute]=catAttr;
+        applyCutpoints(currentAttribute,fit.cutpoints);
+        updateEta(currentAttribute);
+        //re-run the speculations that the new categorical attribute invalidates
+        for(int q=j+1;q<nA && q<=j+window;q++)
+        {
+            if(spec[q]!=null)
+            {
+                int []sel=predictCatAttrs(nAttrs[q],q-j-1);
+                if(!Arrays.equals(sel,spec[q].catAttr))
+                {
+                    spec[q].cancel();
+                    spec[q]=speculate(nAttrs[q],q-j-1,attributeDeadline(j+1,nA));
+                }
+            }
+        }
+    }
+}
+
+/*
+ * Deadline of the j-th of nA numerical attributes in rank order: the budget
+ * left is shared equally by the attributes left, so time an attribute does
+ * not use passes on to the next ones.
+ */
+private long attributeDeadline(int j, int nA)
+{
+    if(runDeadline==Long.MAX_VALUE)return Long.MAX_VALUE;
+    long now=System.nanoTime();
+    return now+Math.max(runDeadline-now,0L)/(nA-j);
+}
+
+/*
+ * discretize a numerical attribute with its cut points, it becomes categorical
+ */
+private void applyCutpoints(int currentAttribute, double []fCutpoints)
+{
+        int fcp=fCutpoints.length;
+        cutpoints[currentAttribute]=fCutpoints;
+        discretizeX(currentAttribute,fCutpoints,fcp);
+        attrNType[currentAttribute]=0;
+        domainsize[currentAttribute]=fcp-1;
+        domainValues[currentAttribute]=new String[fcp-1];
+        for(int t=0; t<fcp-1;t++)
+        {
+            domainValues[currentAttribute][t]=t+"";
+        }
+}
+
+/*
+ * find the cut points of a numerical attribute from its low frequency values,
+ * using the given categorical attributes. The method only reads the data set,
+ * so several attributes can be discretized concurrently. The greedy selection
+ * stops at the deadline (System.nanoTime()) with the cut points accepted so far.
+ */
+private CutpointFit fitCutpoints(int currentAttribute, int []catAttr, long deadline, CutpointFit fit)
+{
+        RankIndex fd=rankIndex[currentAttribute];
+        double []iCutpoints;
+        int []iRanks;
+        int ticp;
+        if(fd!=null)
+        {
+            double []d=fd.d;
+            int []fqCount=fd.fq;
+            int ds=fd.ds;
+            double lambda=0.0;
+            if(ds>0)lambda =(double)fd.total/(double)ds;
+            iCutpoints=new double[ds];
+            iRanks=new int[ds];
+            ticp=findInitialCutpoints(d,fqCount,ds,iCutpoints,iRanks,lambda);
+        }
+        else
+        {
+            iCutpoints=sketchCandidates(currentAttribute);
+            ticp=iCutpoints.length;
+            //the sketch has no ranks, the candidates count as adjacent values
+            iRanks=new int[ticp];
+            for(int t=0;t<ticp;t++)
+            {
+                iRanks[t]=t;
+            }
+        }
+        int []fcFlg=new int[ticp];
+        for(int t=0; t<ticp;t++)
+        {
+            fcFlg[t]=0;
+        }
+        fcFlg[0]=1;fcFlg[ticp-1]=1;
+        double V;
+        boolean stopped;
+        if(coarseToFine && ticp>2)
+        {
+            int []group=holdBackCandidates(iRanks,ticp,fcFlg);
+            double []coarse=selectCutpoints(currentAttribute,iCutpoints,iRanks,ticp,fcFlg,catAttr,deadline,fit);
+            V=coarse[0];
+            stopped=coarse[1]>0.0;
+            if(!stopped && !fit.cancelled)
+            {
+                //refine: select again from the candidates around the coarse cuts
+                int []fineFlg=refineCandidates(group,ticp,fcFlg);
+                double []fine=selectCutpoints(currentAttribute,iCutpoints,iRanks,ticp,fineFlg,catAttr,deadline,fit);
+                if(fine[0]>=coarse[0])
+                {
+                    fcFlg=fineFlg;V=fine[0];
+                }
+                stopped=fine[1]>0.0;
+            }
+        }
+        else
+        {
+            double []sel=selectCutpoints(currentAttribute,iCutpoints,iRanks,ticp,fcFlg,catAttr,deadline,fit);
+            V=sel[0];
+            stopped=sel[1]>0.0;
+        }
+       int fcp=0;
+       for(int t=0; t<ticp;t++)
+       {
+           if(fcFlg[t]==1)fcp++;
+       }
+       if(ticp==1)fcp=2;//first and last candidate are the same
+       double []fCutpoints=new double[fcp];
+       int fc=0;
+       for(int t=0; t<ticp;t++)
+       {
+               if(fcFlg[t]==1)
+               {
+                fCutpoints[fc]=iCutpoints[t];fc++;
+               }
+        }
+       fit.cutpoints=fCutpoints;
+       fit.V=V;
+       fit.truncated=stopped;
+       return fit;
+}
+
+/*
+ * Greedy selection of the cut points: the best open candidate (fcFlg 0) is
+ * accepted while it raises the objective, i.e. the weighted CAIM of the given
+ * categorical attributes. No step is started after the deadline
+ * (System.nanoTime()); the cut points accepted so far are kept.
+ *
+ * @return {V, stopped}: objective V of the accepted cut points, stopped=1 if
+ * the deadline ended the selection
+ */
+private double []selectCutpoints(int nAttr, double []iCutpoints, int []iRanks, int ticp, int []fcFlg,
+        int []catAttr, long deadline, CutpointFit fit)
+{
+        RankIndex fd=rankIndex[nAttr];
+        double V=0.0;
+        int tau=1;
+        int numCat=catAttr.length;
+        CutpointScorer []scorers=new CutpointScorer[numCat];
+        int maxDomain=0;
+        int noOfScorers=0;
+        int [][]cCols=new int[numCat][];
+        int []cSizes=new int[numCat];
+        int []cIndexes=new int[numCat];
+        for(int c=0;c<numCat;c++)
+        {
+            int cIndex=catAttr[c];
+            if(attrNType[cIndex]==0)
+            {
+                cCols[noOfScorers]=catCodes[cIndex];
+                cSizes[noOfScorers]=domainsize[cIndex];
+                cIndexes[noOfScorers]=cIndex;
+                noOfScorers++;
+                if(domainsize[cIndex]>maxDomain)maxDomain=domainsize[cIndex];
+            }
+        }
+        if(noOfScorers>0)
+        {
+            //one pass over the records counts the blocks of all categorical attributes
+            CutpointScorer []created;
+            if(store!=null)
+            {
+                created=CutpointScorer.create(store,nAttr,blockOfRank(iRanks,ticp,fd.ds),
+                        Arrays.copyOf(cIndexes,noOfScorers),Arrays.copyOf(cSizes,noOfScorers),ticp,fcFlg);
+            }
+            else
+            {
+                int []blocks;
+                if(fd!=null)
+                {
+                    blocks=fd.lookup(blockOfRank(iRanks,ticp,fd.ds));
+                }
+                else
+                {
+                    blocks=findBlocks(numColumns[nAttr],iCutpoints,ticp);
+                }
+                created=CutpointScorer.create(blocks,Arrays.copyOf(cCols,noOfScorers),
+                        Arrays.copyOf(cSizes,noOfScorers),ticp,fcFlg,pool);
+            }
+            int a=0;
+            for(int c=0;c<numCat;c++)
+            {
+                if(attrNType[catAttr[c]]==0)
+                {
+                    scorers[c]=created[a];a++;
+                }
+            }
+            if(boundaryPruning)pruneCandidates(nAttr,ticp,fcFlg,created,fit);
+        }
+        int bufferSize=maxDomain;
+        ThreadLocal<CutpointScorer.Buffer> buffers=ThreadLocal.withInitial(() -> new CutpointScorer.Buffer(bufferSize));
+        boolean stopped=false;
+        while(tau==1)
+        {
+            if(deadline!=Long.MAX_VALUE && System.nanoTime()-deadline>=0)
+            {
+                stopped=true;
+                break;
+            }
+            if(fit.cancelled)break;
+            double []best;
+            if(lazyGreedy)
+            {
+                best=lazySearch(ticp,fcFlg,scorers,buffers,V,fit);
+            }
+            else
+            {
+                int open=0;
+                for(int t=0;t<ticp;t++)
+                {
+                    if(fcFlg[t]==0)open++;
+                }
+                fit.evaluations+=open;
+                if(pool==null)
+                {
+                    best=searchCandidates(0,ticp,fcFlg,scorers,buffers.get());
+                }
+                else
+                {
+                    best=invoke(new CandidateSearch(0,ticp,fcFlg,scorers,buffers));
+                }
+            }
+            double mV=best[0];
+            int mt=(int)best[1];
+            if(mV>V &&(mt>=0 && mt<ticp))
+            {
+                fcFlg[mt]=1;
+                V=mV;
+                for(int c=0;c<numCat;c++)
+                {
+                    if(scorers[c]!=null)scorers[c].split(mt);
+                }
+            }
+            else{
+                tau = 0;
+            }
+        }
+        double []result={V,stopped?1.0:0.0};
+        return result;
+}
+
+/*
+ * hold back (fcFlg 2) the open candidates that are not a boundary point of any
+ * categorical attribute
+ */
+private void pruneCandidates(int nAttr, int ticp, int []fcFlg, CutpointScorer []scorers, CutpointFit fit)
+{
+    int open=0, pruned=0;
+    for(int t=1;t<ticp-1;t++)
+    {
+        if(fcFlg[t]==0)
+        {
+            open++;
+            boolean same=true;
+            for(int c=0;c<scorers.length && same;c++)
+            {
+                same=scorers[c].sameDistribution(t);
+            }
+            if(same)
+            {
+                fcFlg[t]=2;pruned++;
+            }
+        }
+    }
+    fit.prunedCandidates+=pruned;
+    Logger.getLogger(className).log(Level.INFO,attrNames[nAttr]+": "+pruned+" of "+open
+            +" candidate cut points are not boundary points");
+}
+
+/*
+ * Thin the candidates for the coarse search. Adjacent low frequency values
+ * form runs of candidates; every run, cut into groups of at most sqrt(ticp)
+ * candidates, is represented by its last candidate. The others are held back
+ * (fcFlg 2).
+ *
+ * @return group of every candidate
+ */
+private int []holdBackCandidates(int []iRanks, int ticp, int []fcFlg)
+{
+    int stride=(int)Math.ceil(Math.sqrt(ticp));
+    int []group=new int[ticp];
+    int g=0, len=0;
+    for(int t=1;t<ticp-1;t++)
+    {
+        if(t>1 && iRanks[t]==iRanks[t-1]+1 && len<stride)
+        {
+            len++;
+        }
+        else
+        {
+            g++;len=1;
+        }
+        group[t]=g;
+    }
+    group[ticp-1]=g+1;
+    for(int t=1;t<ticp-2;t++)
+    {
+        if(group[t+1]==group[t])fcFlg[t]=2;
+    }
+    return group;
+}
+
+/*
+ * candidates of the refinement: the groups on both sides of every coarse cut
+ * point are open, all others are held back
+ */
+private int []refineCandidates(int []group, int ticp, int []coarseFlg)
+{
+    boolean []near=new boolean[ticp+1];
+    for(int t=1;t<ticp-1;t++)
+    {
+        if(coarseFlg[t]==1)
+        {
+            near[group[t]]=true;
+            near[group[t]+1]=true;
+        }
+    }
+    int []fineFlg=new int[ticp];
+    for(int t=1;t<ticp-1;t++)
+    {
+        fineFlg[t]=near[group[t]]?0:2;
+    }
+    fineFlg[0]=1;fineFlg[ticp-1]=1;
+    return fineFlg;
+}
+
+/*
+ * cut points of a numerical attribute and the objective V they reach
+ */
+private static class CutpointFit
+{
+    double []cutpoints;
+    double V;
+    boolean truncated;//stopped by the deadline
+    long evaluations, skippedEvaluations, prunedCandidates;//work of the fit, counted when it is used
+    volatile boolean cancelled;//the fit is not used, stop before the next candidates
+}
+
+/*
+ * A speculative discretization of a numerical attribute, started on the pool
+ * with the categorical attributes it was predicted to use.
+ */
+private static class Speculation
+{
+    int []catAttr;
+    CutpointFit fit=new CutpointFit();
+    ForkJoinTask<CutpointFit> task;
+
+    /*
+     * the running fit stops before its next candidates, its work is not counted
+     */
+    void cancel()
+    {
+        fit.cancelled=true;
+        task.cancel(false);
+    }
+}
+
+/*
+ * start discretizing a numerical attribute while pending attributes are still
+ * running; null if its categorical attributes cannot be predicted yet
+ */
+private Speculation speculate(int numAttr, int pending, long deadline)
+{
+    int []sel=predictCatAttrs(numAttr,pending);
+    if(sel==null)return null;
+    Speculation sp=new Speculation();
+    sp.catAttr=sel;
+    CutpointFit fit=sp.fit;
+    sp.task=pool.submit(() -> fitCutpoints(numAttr,sel,deadline,fit));
+    return sp;
+}
+
+/*
+ * score the unflagged candidates lo..hi-1 and return the best one as {mV, mt}.
+ * Ties keep the lowest candidate, mt=-1 if no candidate scores above 0.
+ */
+private double []searchCandidates(int lo, int hi, int []fcFlg, CutpointScorer []scorers, CutpointScorer.Buffer buf)
+{
+    double mV=0.0;
+    int mt=-1;
+    for(int t=lo; t<hi;t++)
+    {
+       if(fcFlg[t]==0)
+       {
+          double tv=evaluate(t,scorers,buf);
+          if(tv>mV)
+          {
+             mV=tv;mt=t;
+          }
+       }
+    }
+    double []best={mV,mt};
+    return best;
+}
+
+/*
+ * weighted CAIM of candidate t: the CAIM of the categorical attributes
+ * weighted by their uncertainty
+ */
+private double evaluate(int t, CutpointScorer []scorers, CutpointScorer.Buffer buf)
+{
+    double tv=0.0, twCaim=0.0, tUn=0.0;
+    for(int c=0;c<scorers.length;c++)
+    {
+        if(scorers[c]!=null)
+        {
+            double []cu=scorers[c].score(t,buf);
+            twCaim+=cu[1]*cu[0];
+            tUn+=cu[1];
+        }
+    }
+    if(tUn>0.0)tv=twCaim/tUn;
+    return tv;
+}
+
+/*
+ * Lazy search of the best candidate. The weighted CAIM is an average of the
+ * CAIM of the categorical attributes, so the largest CAIM bound of the scorers
+ * bounds it. The unflagged candidates are queued by their bounds and scored
+ * from the top until no bound left can beat the best score, or reach it with a
+ * lower candidate. Scores up to V are never accepted, so the search starts
+ * from V: the result is the one of searchCandidates whenever that is above V.
+ * In parallel mode the candidates are scored in batches of the pool size.
+ */
+private double []lazySearch(int ticp, int []fcFlg, CutpointScorer []scorers,
+        ThreadLocal<CutpointScorer.Buffer> buffers, double V, CutpointFit fit)
+{
+    double []ub=new double[ticp];
+    PriorityQueue<Integer> queue=new PriorityQueue<>(Math.max(ticp,1),
+            (a,b) -> ub[a]!=ub[b]?Double.compare(ub[b],ub[a]):Integer.compare(a,b));
+    for(int t=0;t<ticp;t++)
+    {
+        if(fcFlg[t]==0)
+        {
+            for(int c=0;c<scorers.length;c++)
+            {
+                if(scorers[c]!=null)ub[t]=Math.max(ub[t],scorers[c].upperBound(t));
+            }
+            queue.add(t);
+        }
+    }
+    double mV=V;
+    int mt=-1;
+    int batch=pool==null?1:parallelism;
+    int []next=new int[batch];
+    double []tv=new double[batch];
+    long scored=0, skipped=0;
+    while(true)
+    {
+        int n=0;
+        while(n<batch && !queue.isEmpty() && ub[queue.peek()]>=mV)
+        {
+            int t=queue.poll();
+            if(ub[t]==mV && (mt<0 || t>mt))
+            {
+                skipped++;
+            }
+            else
+            {
+                next[n]=t;n++;
+            }
+        }
+        if(n==0 || fit.cancelled)break;
+        if(n==1)
+        {
+            tv[0]=evaluate(next[0],scorers,buffers.get());
+        }
+        else
+        {
+            forEachIndex(n, i -> tv[i]=evaluate(next[i],scorers,buffers.get()));
+        }
+        scored+=n;
+        for(int i=0;i<n;i++)
+        {
+            if(tv[i]>mV || (tv[i]==mV && mt>=0 && next[i]<mt))
+            {
+                mV=tv[i];mt=next[i];
+            }
+        }
+    }
+    skipped+=queue.size();
+    fit.evaluations+=scored;
+    fit.skippedEvaluations+=skipped;
+    double []best={mV,mt};
+    return best;
+}
+
+/*
+ * Fork/join search of the best candidate. The range is halved down to small
+ * leaves and the halves are reduced left first, so ties resolve to the lowest
+ * candidate as in the serial loop.
+ */
+private class CandidateSearch extends RecursiveTask<double[]>
+{
+    private static final long serialVersionUID=1L;
+    private static final int LEAF=8;
+    private int lo, hi;
+    private int []fcFlg;
+    private CutpointScorer []scorers;
+    private ThreadLocal<CutpointScorer.Buffer> buffers;
+
+    CandidateSearch(int lo, int hi, int []fcFlg, CutpointScorer []scorers, ThreadLocal<CutpointScorer.Buffer> buffers)
+    {
+        this.lo=lo;this.hi=hi;
+        this.fcFlg=fcFlg;this.scorers=scorers;this.buffers=buffers;
+    }
+
+    @Override
+    protected double[] compute()
+    {
+        if(hi-lo<=LEAF)
+        {
+            return searchCandidates(lo,hi,fcFlg,scorers,buffers.get());
+        }
+        int mid=(lo+hi)>>>1;
+        CandidateSearch left=new CandidateSearch(lo,mid,fcFlg,scorers,buffers);
+        left.fork();
+        double []r=new CandidateSearch(mid,hi,fcFlg,scorers,buffers).compute();
+        double []l=left.join();
+        if(r[0]>l[0])return r;
+        return l;
+    }
+}
+
+/*
+ * run body for the indices 0..n-1, on the fork/join pool in parallel mode
+ */
+private void forEachIndex(int n, IntConsumer body)
+{
+    if(pool==null)
+    {
+        for(int i=0;i<n;i++)
+        {
+            body.accept(i);
+        }
+    }
+    else
+    {
+        invoke(new IndexAction(0,n,body));
+    }
+}
+
+/*
+ * run a task on the pool, directly if the caller already is one of its workers
+ */
+private <T> T invoke(ForkJoinTask<T> task)
+{
+    if(ForkJoinTask.inForkJoinPool())
+    {
+        return task.invoke();
+    }
+    return pool.invoke(task);
+}
+
+private static class IndexAction extends RecursiveAction
+{
+    private static final long serialVersionUID=1L;
+    private int lo, hi;
+    private IntConsumer body;
+
+    IndexAction(int lo, int hi, IntConsumer body)
+    {
+        this.lo=lo;this.hi=hi;this.body=body;
+    }
+
+    @Override
+    protected void compute()
+    {
+        if(hi-lo==1)
+        {
+            body.accept(lo);
+        }
+        else if(hi>lo)
         {
-            domainValues[currentAttribute][t]=t+"";
+            int mid=(lo+hi)>>>1;
+            invokeAll(new IndexAction(lo,mid,body),new IndexAction(mid,hi,body));
         }
     }
 }
 
+/*
+ * Categorize a numerical attribute. The interval of every distinct value is
+ * found once and looked up through the rank index of the attribute.
+ */
 private void discretizeX(int nAttr, double []cutpoints, int nc)
 {
     int NOI=nc-1;
+    RankIndex idx=rankIndex[nAttr];
+    if(idx==null)
+    {
+        discretizeValues(nAttr,cutpoints,NOI);
+        return;
+    }
+    int []ofRank=new int[idx.ds];
+    for(int r=0;r<idx.ds;r++)
+    {
+        ofRank[r]=findInterval(idx.d[r],cutpoints,NOI);
+    }
+    if(store!=null)
+    {
+        //the spilled ranks of the attribute are read as intervals from now on
+        store.remap(nAttr,ofRank);
+        return;
+    }
+    String []labels=new String[Math.max(NOI,0)];
+    for(int j=0;j<labels.length;j++)
+    {
+        labels[j]=j+"";
+    }
+    int []codes=idx.lookup(ofRank);
+    for(int i=0;dataset!=null && i<noOfRecords;i++)
+    {
+      if(idx.rank[i]>=0)
+      {
+         dataset[i][nAttr]=codes[i]>=0?labels[codes[i]]:"";
+      }
+    }
+    catCodes[nAttr]=codes;
+}
+
+/*
+ * categorize a numerical attribute without rank index, value by value
+ */
+private void discretizeValues(int nAttr, double []cutpoints, int NOI)
+{
+    int []codes=new int[noOfRecords];
     for(int i=0;i<noOfRecords;i++)
     {
-      if(MV[i][nAttr]==0 )
+      codes[i]=-1;
+      double nCV=numColumns[nAttr][i];
+      if(!Double.isNaN(nCV))
       {
-          double nCV=Double.parseDouble(dataset[i][nAttr]);
           String cat="";
-          for(int j=0;j<NOI;j++)
+          int j=findInterval(nCV,cutpoints,NOI);
+          if(j>=0)
           {
-                    if(j==0)
-                    {
-                        if(nCV>=cutpoints[j] && nCV<=cutpoints[j+1] )
-                        {
-                            cat=j+"";break;
-                        }
-                    }
-                     else{
-                        if(nCV>cutpoints[j] && nCV<=cutpoints[j+1] )
-                        {
-                           cat=j+"";break;
-                        }
-                     }
+              cat=j+"";codes[i]=j;
           }
-         dataset[i][nAttr]=cat;
+         if(dataset!=null)dataset[i][nAttr]=cat;
       }
     }
+    catCodes[nAttr]=codes;
 }
 
-private double []CAIM_Uncertainty(int nAttr, int cAttr, double []cutpoints, int nc)
+/*
+ * Candidate cut points of a numerical attribute from sketches of its values:
+ * the smallest and largest value, and the quantiles every epsilon*n records
+ * whose frequency is below lambda according to the heavy hitters. Their
+ * counts are lower bounds, compared with lambda as they are.
+ */
+private double []sketchCandidates(int nAttr)
 {
-    double []CU=new double[2];
-    CU[0]=0.0;
-    int NOI=nc-1;
-    int cv=domainsize[cAttr];
-    int [][]coapp=new int[cv][NOI];
-    int M=0;
-    int []rowTotal=new int[cv];
-    int []colTotal=new int[NOI];
-    int []Maxr=new int[NOI];
-    //calculate CAIM
-    for(int c=0;c<cv;c++)
-    {
-        String tdv=domainValues[cAttr][c];
-        for(int j=0;j<NOI;j++)
-        {
-            int count=0;
-            for(int i=0;i<noOfRecords;i++)
-            {
-                if(MV[i][nAttr]==0 && MV[i][cAttr]==0)
-                {
-                    double nCV=Double.parseDouble(dataset[i][nAttr]);
-                    if(j==0)
-                    {
-                        if(nCV>=cutpoints[j] && nCV<=cutpoints[j+1] && tdv.equals(dataset[i][cAttr]) )
-                        {
-                            count++;
-                        }
-                    }
-                     else{
-                        if(nCV>cutpoints[j] && nCV<=cutpoints[j+1] && tdv.equals(dataset[i][cAttr]) )
-                        {
-                            count++;
-                        }
-                     }
-                }
-            }
-          coapp[c][j]=count;
-        }
-    }
-    for(int c=0;c<cv;c++)
+    double []nCol=numColumns[nAttr];
+    int m=(int)Math.ceil(1.0/sketchEpsilon);
+    QuantileSketch quantiles=new QuantileSketch(2*m);
+    HeavyHitters heavy=new HeavyHitters(m);
+    DistinctCounter distinct=new DistinctCounter();
+    double min=Double.POSITIVE_INFINITY, max=Double.NEGATIVE_INFINITY;
+    for(int i=0;i<noOfRecords;i++)
     {
-        int count=0;
-        for(int j=0;j<NOI;j++)
+        double v=nCol[i];
+        if(!Double.isNaN(v))
         {
-            count+=coapp[c][j];
+            quantiles.update(v);
+            heavy.add(v);
+            distinct.add(v);
+            if(v<min)min=v;
+            if(v>max)max=v;
         }
-        rowTotal[c]=count;
-        M+=count;
     }
-    double totCaim=0.0;
-    for(int j=0;j<NOI;j++)
+    long total=quantiles.count();
+    if(total==0)return new double[0];
+    double ds=Math.min(Math.max(distinct.estimate(),1.0),(double)total);
+    double lambda=total/ds;
+    double []q=quantiles.quantiles(m);
+    double []candidates=new double[q.length+2];
+    int ticp=0;
+    candidates[ticp]=min;ticp++;
+    for(int i=0;i<q.length;i++)
     {
-        int count=0;
-        int mxr=0;
-        for(int c=0;c<cv;c++)
+        if(q[i]>min && q[i]<max && heavy.count(q[i])<lambda)
         {
-            count+=coapp[c][j];
-            if(coapp[c][j]>mxr)mxr=coapp[c][j];
+            candidates[ticp]=q[i];ticp++;
         }
-        colTotal[j]=count;
-        Maxr[j]=mxr;
-        if(colTotal[j]>0)totCaim+=Math.pow((double)Maxr[j], 2.0)/colTotal[j];
     }
-    if(NOI>0)CU[0]=totCaim/(double)NOI;
+    if(max>min)
+    {
+        candidates[ticp]=max;ticp++;
+    }
+    return Arrays.copyOf(candidates,ticp);
+}
 
-     //calculate Uncertainty
-    double entrophy=0.0;
-    CU[1]=0.0;
-    for(int c=0;c<cv;c++)
+/*
+ * block of every record without rank index: the first candidate cut point
+ * that is not smaller than the value, -1 for a missing value
+ */
+private int []findBlocks(double []nCol, double []iCutpoints, int ticp)
+{
+    int []blocks=new int[nCol.length];
+    for(int i=0;i<nCol.length;i++)
     {
-        for(int j=0;j<NOI;j++)
+        double v=nCol[i];
+        blocks[i]=-1;
+        if(!Double.isNaN(v) && ticp>0 && v<=iCutpoints[ticp-1])
         {
-            double Pcj=coapp[c][j]/(double)M;
-            if(Pcj>0)
+            int lo=0, hi=ticp-1;
+            while(lo<hi)
             {
-            entrophy+=Pcj*Math.log(1.0/Pcj);
+                int mid=(lo+hi)>>>1;
+                if(iCutpoints[mid]>=v)
+                {
+                    hi=mid;
+                }
+                else
+                {
+                    lo=mid+1;
+                }
             }
+            blocks[i]=lo;
         }
     }
-    CU[1]=entrophy;
-    return CU;
+    return blocks;
+}
 
+/*
+ * Find the interval of a value by binary search over the cut points. The first
+ * interval is [cutpoints[0],cutpoints[1]], every other interval j is
+ * (cutpoints[j],cutpoints[j+1]]. Returns -1 for a missing value or a value
+ * outside all intervals.
+ */
+private int findInterval(double nCV, double []cutpoints, int NOI)
+{
+    if(NOI<=0)return -1;
+    if(nCV>=cutpoints[0] && nCV<=cutpoints[1])return 0;
+    if(!(nCV>cutpoints[1]) || nCV>cutpoints[NOI])return -1;
+    int lo=2, hi=NOI;
+    while(lo<hi)
+    {
+        int mid=(lo+hi)>>>1;
+        if(cutpoints[mid]>=nCV)
+        {
+            hi=mid;
+        }
+        else
+        {
+            lo=mid+1;
+        }
+    }
+    return lo-1;
 }
 
-private int findInitialCutpoints(double dl[], int []fq, int dsl,double []ipoints, double lmbda)
+private int findInitialCutpoints(double dl[], int []fq, int dsl,double []ipoints, int []iranks, double lmbda)
 {
     int ticp=0;
     for(int i=0;i<dsl;i++)
@@ -363,62 +2088,55 @@ private int findInitialCutpoints(double dl[], int []fq, int dsl,double []ipoints
         if(fq[i]<lmbda||i==0||i==dsl-1)
         {
            ipoints[ticp]=dl[i];
+           iranks[ticp]=i;
            ticp++;
         }
     }
     return ticp;
 }
 
-private void frequencyDistribution(int currAttr)
+/*
+ * Find the block of every distinct value, i.e. the first candidate cut point
+ * whose rank is not smaller than the rank of the value
+ */
+private static int []blockOfRank(int []iRanks, int ticp, int ds)
 {
-    int totalValue=0;
-    ds=0;
-    lambda=0.0;
-    for (int i=0;i<noOfRecords;i++)
+    int []ofRank=new int[ds];
+    int b=0;
+    for(int r=0;r<ds;r++)
     {
-        if(isMissing(dataset[i][currAttr])==0)
-        {
-            totalValue++;
-            double cv=Double.parseDouble(dataset[i][currAttr]);
-            int flg=findDomain(d, ds, cv);
-            if(flg<0)
-            {
-                d[ds]=cv;
-                fqCount[ds]=1;
-                ds++;
-                
-            }
-             else
-            {
-                fqCount[flg]++;
-            }
-        }
+        while(b<ticp && iRanks[b]<r)b++;
+        ofRank[r]=b<ticp?b:-1;
     }
-  if(ds>0)lambda =(double)totalValue/(double)ds;
-  
+    return ofRank;
 }
 
-private int findDomain(double []dl, int dsl, double cVal)
+/*
+ * Rank the numerical attributes based on the correlation ratio, in descending
+ * order. Without ties the order is unique and a merge sort finds it in
+ * O(n log n). The order of tied values (and of NaN) is the one of the exchange
+ * sort of the original implementation, which depends on the values around
+ * them; it decides which attribute is discretized first and which categorical
+ * attributes are selected. It has no sort key, so input with ties is ranked by
+ * the exchange sort and stays quadratic in the no. of attributes. The ties are
+ * found before sorting, so such input is sorted once.
+ */
+static void rankNAttributes(double []Ra, int []nAttrs, int nA)
 {
-    int flg=-1;
-
-    for(int i=0;i<dsl;i++)
+    HashSet<Double> values=new HashSet<>();
+    for(int k=0;k<nA;k++)
     {
-        if(cVal==dl[i])
+        //0.0 and -0.0 are tied too
+        if(Double.isNaN(Ra[k]) || !values.add(Ra[k]==0.0?0.0:Ra[k]))
         {
-            flg=i;break;
+            exchangeSortDesc(Ra,nAttrs,nA);
+            return;
         }
     }
-
-    return flg;
+    mergeSortDesc(Ra,nAttrs,nA);
 }
 
-
-/*
- * Rank the numerical attributes based on the correlation ratio
- */
-
-private void rankNAttributes(double []Ra, int []nAttrs, int nA)
+private static void exchangeSortDesc(double []Ra, int []nAttrs, int nA)
 {
     for(int i=0; i<nA-1;i++)
     {
@@ -435,34 +2153,49 @@ private void rankNAttributes(double []Ra, int []nAttrs, int nA)
             }
         }
     }
-
 }
 
 /*
- * sort the distinct values of an attribute in accening order.
+ * bottom-up merge sort in descending order
  */
-
-private void SortAsc(double []Ra, int []nAttrs, int nA)
+private static void mergeSortDesc(double []Ra, int []nAttrs, int nA)
 {
-    for(int i=0; i<nA-1;i++)
+    double []tmpR=new double[nA];
+    int []tmpA=new int[nA];
+    for(int width=1; width<nA; width*=2)
     {
-        for(int j=i+1; j<nA;j++)
+        for(int lo=0; lo<nA-width; lo+=2*width)
         {
-            if(Ra[j]<Ra[i])
+            int mid=lo+width, hi=Math.min(lo+2*width, nA);
+            int i=lo, j=mid, k=lo;
+            while(i<mid && j<hi)
             {
-                double tmp=Ra[j];
-                Ra[j]=Ra[i];
-                Ra[i]=tmp;
-                int tmpA=nAttrs[j];
-                nAttrs[j]=nAttrs[i];
-                nAttrs[i]=tmpA;
+                if(Ra[j]>Ra[i])
+                {
+                    tmpR[k]=Ra[j];tmpA[k]=nAttrs[j];j++;
+                }
+                else
+                {
+                    tmpR[k]=Ra[i];tmpA[k]=nAttrs[i];i++;
+                }
+                k++;
+            }
+            while(i<mid)
+            {
+                tmpR[k]=Ra[i];tmpA[k]=nAttrs[i];i++;k++;
             }
+            while(j<hi)
+            {
+                tmpR[k]=Ra[j];tmpA[k]=nAttrs[j];j++;k++;
+            }
+            System.arraycopy(tmpR, lo, Ra, lo, hi-lo);
+            System.arraycopy(tmpA, lo, nAttrs, lo, hi-lo);
         }
     }
-
 }
 
 
+
 /**
   * this function will indicate whether or not a value is missing.
   *
@@ -470,7 +2203,7 @@ private void SortAsc(double []Ra, int []nAttrs, int nA)
   * @return ret an integer value 0->No missing, 1->Missing
   */
 
- private int isMissing(String oStr)
+ static int isMissing(String oStr)
     {
        int ret=0;
        if(oStr.equals("")||oStr.equals("?")||oStr.equals("�")||oStr.equals("NaN")||oStr.equals("  NaN"))
@@ -508,104 +2241,315 @@ private void arrayToFile(String [][]data, int totRec, int totAttr,String outF)
 }
 
  /*
- * this method is used to find domain size of each attribule
+ * this method is used to find domain size of each attribule. The values are
+ * dictionary-encoded into dense int codes in order of first appearance, and
+ * domainValues keeps one entry per code.
  */
 public int findDomainSize(int attrPos)
     {
-        int attrDomainSize=0;
+        HashMap<String,Integer> dictionary=new HashMap<String,Integer>();
+        int []codes=new int[noOfRecords];
         for(int i=0; i<noOfRecords;i++)
         {
-           if(MV[i][attrPos]==0)
+           codes[i]=-1;
+           if(isMissing(dataset[i][attrPos])==0)
            {
-               if(chkDomain(attrDomainSize,attrPos,dataset[i][attrPos])==0)
+               Integer code=dictionary.get(dataset[i][attrPos]);
+               if(code==null)
                 {
-                    domainValues[attrPos][attrDomainSize]=dataset[i][attrPos];
-                    attrDomainSize++;
+                    code=dictionary.size();
+                    dictionary.put(dataset[i][attrPos], code);
                 }
+               codes[i]=code;
             }
         }
-        return attrDomainSize;
-    }
-private int chkDomain(int domainSize,int attrPos, String curVal)
-    {
-        int flag=0;
-        for(int i=0;i<domainSize;i++)
+        String []values=new String[dictionary.size()];
+        for(String key:dictionary.keySet())
         {
-            if(curVal.equals(domainValues[attrPos][i]))
-            {
-               flag=1; break;
-            }
+            values[dictionary.get(key)]=key;
         }
-        return flag;
+        domainValues[attrPos]=values;
+        catCodes[attrPos]=codes;
+        return values.length;
     }
 /*
- * Calculate mean value of each numerical attribute
+ * Parse the values of a numerical attribute once, so that the later passes
+ * read a primitive column instead of the String cells. Missing values are NaN.
  */
-private double calMean(int aPos)
+private double []parseNumColumn(int aPos)
 {
-    double mu=0.0, sum=0.0;
+    double []col=new double[noOfRecords];
     for(int i=0; i<noOfRecords;i++)
         {
-           if(MV[i][aPos]==0)
+           if(isMissing(dataset[i][aPos])==0)
            {
-               sum+=Double.parseDouble(dataset[i][aPos]);
-            }
+               col[i]=Double.parseDouble(dataset[i][aPos]);
+           }
+           else
+           {
+               col[i]=Double.NaN;
+           }
         }
+    return col;
+}
+
+/*
+ * Calculate mean value of each numerical attribute
+ */
+private double calMean(int aPos)
+{
+    double mu=0.0, sum=0.0;
+    sum=sumColumn(aPos,0.0,false);
     if(noOfRecords>0)mu=sum/noOfRecords;
     return mu;
 }
 
+private double eta_denominator(int aPos)
+{
+    return sumColumn(aPos,mean[aPos],true);
+}
+
 /*
- * Calculate mean value of each numerical attribute
+ * Sum the non-missing values of a numerical attribute, or their squared
+ * deviations from center, with a row-partitioned scan of its column or of its
+ * spilled ranks.
  */
-private double calConditionalMean(int nPos, int cPos, String cVal, int []xCnt)
+private double sumColumn(int aPos, double center, boolean squared)
 {
-    double cmu=0.0, sum=0.0;
-    int cnt=0;
-    for(int i=0; i<noOfRecords;i++)
+    double []total;
+    if(store!=null)
+    {
+        int []attrs={aPos};
+        total=store.scan(attrs,new ColumnStore.Scan<double[]>()
         {
-           if(MV[i][nPos]==0 && MV[i][cPos]==0&& dataset[i][cPos].equals(cVal))
-           {
-               sum+=Double.parseDouble(dataset[i][nPos]);
-               cnt++;
+            @Override
+            protected double[] newTable()
+            {
+                return new double[1];
+            }
+
+            @Override
+            protected void scan(double []table, int [][]cols, int n)
+            {
+                sumRange(table,storedValues(aPos,cols[0],n),center,squared,0,n);
             }
+
+            @Override
+            protected void merge(double []into, double []table)
+            {
+                into[0]+=table[0];
+            }
+        });
+        return total[0];
+    }
+    double []col=numColumns[aPos];
+    total=new RowScan<double[]>()
+    {
+        @Override
+        protected double[] newTable()
+        {
+            return new double[1];
+        }
+
+        @Override
+        protected void scan(double []table, int from, int to)
+        {
+            sumRange(table,col,center,squared,from,to);
+        }
+
+        @Override
+        protected void merge(double []into, double []table)
+        {
+            into[0]+=table[0];
         }
-    xCnt[0]=cnt;
-    if(cnt>0)cmu=sum/(double)cnt;
-    return cmu;
+    }.run(pool,noOfRecords);
+    return total[0];
 }
 
-private double eta_denominator(int aPos)
+private static void sumRange(double []table, double []col, double center, boolean squared, int from, int to)
 {
-    double tvar=0.0, var=0.0,svar=0.0;
-    for(int i=0; i<noOfRecords;i++)
+    for(int i=from; i<to;i++)
+    {
+        if(!Double.isNaN(col[i]))
         {
-           if(MV[i][aPos]==0)
-           {
-               var=(Double.parseDouble(dataset[i][aPos])-mean[aPos]);
-               svar=Math.pow(var, 2.0);
-               tvar+=svar;
+            if(squared)
+            {
+                table[0]+=Math.pow(col[i]-center, 2.0);
+            }
+            else
+            {
+                table[0]+=col[i];
             }
         }
-    return tvar;
+    }
+}
+
+/*
+ * values of a chunk of spilled ranks of a numerical attribute, NaN->missing
+ */
+private double []storedValues(int aPos, int []ranks, int n)
+{
+    double []d=rankIndex[aPos].d;
+    double []col=new double[n];
+    for(int i=0;i<n;i++)
+    {
+        col[i]=ranks[i]>=0?d[ranks[i]]:Double.NaN;
+    }
+    return col;
 }
 
-private double eta_numerator(int nPos,int cPos)
+/*
+ * The method collects the count and the sum of a numerical attribute for every
+ * code of the given categorical attributes in one pass over the records, then
+ * derives the correlation ratio (eta) of each pair from these grouped statistics.
+ */
+private void calEtaGrouped(int nAttr, int []cAttrs, int nC)
 {
-    double tvar=0.0,svar=0.0;
-    int []count=new int[1];
-    for(int j=0;j<domainsize[cPos];j++)
+    GroupStats stats;
+    if(store!=null)
+    {
+        int []attrs=new int[nC+1];
+        attrs[0]=nAttr;
+        System.arraycopy(cAttrs, 0, attrs, 1, nC);
+        stats=store.scan(attrs,new ColumnStore.Scan<GroupStats>()
+        {
+            @Override
+            protected GroupStats newTable()
+            {
+                return new GroupStats(cAttrs,nC);
+            }
+
+            @Override
+            protected void scan(GroupStats table, int [][]cols, int n)
+            {
+                table.add(storedValues(nAttr,cols[0],n),Arrays.copyOfRange(cols,1,nC+1),0,n);
+            }
+
+            @Override
+            protected void merge(GroupStats into, GroupStats table)
+            {
+                into.merge(table);
+            }
+        });
+    }
+    else
+    {
+        double []col=numColumns[nAttr];
+        int [][]codes=new int[nC][];
+        for(int k=0;k<nC;k++)
+        {
+            codes[k]=catCodes[cAttrs[k]];
+        }
+        stats=new RowScan<GroupStats>()
+        {
+            @Override
+            protected GroupStats newTable()
+            {
+                return new GroupStats(cAttrs,nC);
+            }
+
+            @Override
+            protected void scan(GroupStats table, int from, int to)
+            {
+                table.add(col,codes,from,to);
+            }
+
+            @Override
+            protected void merge(GroupStats into, GroupStats table)
+            {
+                into.merge(table);
+            }
+        }.run(pool,noOfRecords);
+    }
+    int [][]count=stats.count;
+    double [][]sum=stats.sum;
+    double denom=etaDenominator[nAttr];
+    for(int k=0;k<nC;k++)
     {
-        double cmu=calConditionalMean(nPos,cPos,domainValues[cPos][j],count);
-        svar=Math.pow(cmu-mean[nPos], 2.0);
-        tvar+=(svar*count[0]);
-       
+        double eta=0.0;
+        if(denom>0)
+        {
+            double numerator=0.0;
+            for(int j=0;j<count[k].length;j++)
+            {
+                double cmu=0.0;
+                if(count[k][j]>0)cmu=sum[k][j]/(double)count[k][j];
+                numerator+=(Math.pow(cmu-mean[nAttr], 2.0)*count[k][j]);
+            }
+            eta=Math.sqrt(numerator/denom);
+        }
+        etaMatrix[nAttr][cAttrs[k]]=eta;
     }
-    return tvar;
 }
 
+/*
+ * count and sum of a numerical attribute per code of each categorical attribute
+ */
+private class GroupStats
+{
+    int [][]count;
+    double [][]sum;
+
+    GroupStats(int []cAttrs, int nC)
+    {
+        count=new int[nC][];
+        sum=new double[nC][];
+        for(int k=0;k<nC;k++)
+        {
+            count[k]=new int[domainsize[cAttrs[k]]];
+            sum[k]=new double[domainsize[cAttrs[k]]];
+        }
+    }
+
+    /*
+     * count the records from..to-1 of a numerical column by the codes of
+     * the categorical attributes
+     */
+    void add(double []col, int [][]codes, int from, int to)
+    {
+        for(int i=from; i<to;i++)
+        {
+            double x=col[i];
+            if(!Double.isNaN(x))
+            {
+                for(int k=0;k<codes.length;k++)
+                {
+                    int c=codes[k][i];
+                    if(c>=0)
+                    {
+                        count[k][c]++;
+                        sum[k][c]+=x;
+                    }
+                }
+            }
+        }
+    }
+
+    void merge(GroupStats table)
+    {
+        for(int k=0;k<count.length;k++)
+        {
+            for(int c=0;c<count[k].length;c++)
+            {
+                count[k][c]+=table.count[k][c];
+                sum[k][c]+=table.sum[k][c];
+            }
+        }
+    }
+}
 
 private int []findCatAttrs(int numAttr)
+{
+    return predictCatAttrs(numAttr,0);
+}
+
+/*
+ * select the top categorical attributes of a numerical attribute while a number of
+ * higher-ranked numerical attributes are still pending. The selection is taken from
+ * the current categorical attributes with the size it will have once the pending
+ * ones are categorical too; null if there are not enough of them yet.
+ */
+private int []predictCatAttrs(int numAttr, int pending)
 {
     int noCat=0;
     for(int i=0;i<noOfAttrs;i++)
@@ -623,17 +2567,18 @@ private int []findCatAttrs(int numAttr)
     {
         if(attrNType[i]==0 && k<noCat)
         {
-            R[k]=calEta(numAttr,i);
+            R[k]=etaMatrix[numAttr][i];
             tmpcatIndex[k]=i;
             k++;
         }
     }
     rankNAttributes(R,tmpcatIndex,noCat);
 
-    int ncAttr=(int)(pCatAttrs*(double)noCat);
+    int ncAttr=(int)(pCatAttrs*(double)(noCat+pending));
 
     if(ncAttr<=0) ncAttr=1;
-    if(ncAttr>noCat) ncAttr=noCat;
+    if(ncAttr>noCat+pending) ncAttr=noCat+pending;
+    if(ncAttr>noCat) return null;
     int []catIndex=new int[ncAttr];
     for(int i=0;i<ncAttr;i++)
     {
@@ -646,35 +2591,103 @@ private int []findCatAttrs(int numAttr)
 
 /*
  * The method calculates correlation ratio (eta) for each pair of numerical and categorical attributes,
- * then calculates the average eta value.
+ * then calculates the average eta value. The numerical attributes are processed in parallel.
  */
 private void calAvgEta(double []Ra)
 {
+    forEachIndex(noOfNumAttrs, i -> {
+        etaMatrix[NumAttrs[i]]=new double[noOfAttrs];
+        calEtaGrouped(NumAttrs[i],CatAttrs,noOfCatAttrs);
+    });
+    averageEta(Ra);
+}
+
+/*
+ * The eta of calAvgEta for a data set whose categorical columns may not be
+ * parsed yet. The columns are materialized in batches of up to a quarter of
+ * the heap, each batch in one pass over the data file. Afterwards a column is
+ * dropped if no numerical attribute can select it: findCatAttrs never selects
+ * more than pCatAttrs*noOfAttrs attributes, and at least that many categorical
+ * attributes have a higher eta with every numerical attribute.
+ */
+private void calAvgEta(double []Ra, ColumnarData data) throws IOException
+{
+    if(noOfNumAttrs==0)return;
     for(int i=0;i<noOfNumAttrs;i++)
     {
-        double eta_tmp=0.0;Ra[i]=0.0;
+        etaMatrix[NumAttrs[i]]=new double[noOfAttrs];
+    }
+    long perColumn=8L*Math.max(noOfRecords,1);
+    int batch=(int)Math.max(1,Math.min(noOfCatAttrs,Runtime.getRuntime().maxMemory()/4/perColumn));
+    for(int from=0;from<noOfCatAttrs;from+=batch)
+    {
+        int []cAttrs=Arrays.copyOfRange(CatAttrs,from,Math.min(from+batch,noOfCatAttrs));
+        data.materialize(cAttrs);
+        for(int c:cAttrs)
+        {
+            catCodes[c]=data.catCodes[c];
+            domainValues[c]=data.domainValues[c];
+            domainsize[c]=domainValues[c].length;
+            data.catCodes[c]=null;
+        }
+        forEachIndex(noOfNumAttrs, i -> calEtaGrouped(NumAttrs[i],cAttrs,cAttrs.length));
+    }
+    int top=Math.max(1,(int)(pCatAttrs*(double)noOfAttrs));
+    if(top<noOfCatAttrs)
+    {
+        boolean []selectable=new boolean[noOfAttrs];
+        double []R=new double[noOfCatAttrs];
+        for(int i=0;i<noOfNumAttrs;i++)
+        {
+            for(int j=0;j<noOfCatAttrs;j++)
+            {
+                R[j]=etaMatrix[NumAttrs[i]][CatAttrs[j]];
+            }
+            double []sorted=R.clone();
+            Arrays.sort(sorted);
+            double least=sorted[noOfCatAttrs-top];//eta of the top-th attribute
+            for(int j=0;j<noOfCatAttrs;j++)
+            {
+                if(!(R[j]<least))selectable[CatAttrs[j]]=true;
+            }
+        }
         for(int j=0;j<noOfCatAttrs;j++)
         {
-            eta_tmp+=calEta(NumAttrs[i],CatAttrs[j]);
+            if(!selectable[CatAttrs[j]])catCodes[CatAttrs[j]]=null;
         }
-        if(noOfCatAttrs>0) ;Ra[i]=eta_tmp/(double)noOfCatAttrs;
     }
+    averageEta(Ra);
 }
 
 /*
- * The method calculates correlation ratio (eta) for each pair of numerical and categorical attributes
+ * average eta of each numerical attribute with the categorical attributes
  */
-private double calEta(int nAttr, int cAttr)
+private void averageEta(double []Ra)
 {
-    double eta=0.0, denom=0.0;
-    denom=eta_denominator(nAttr);
-    if(denom>0)
+    for(int i=0;i<noOfNumAttrs;i++)
     {
-        double numerator=eta_numerator(nAttr,cAttr);
-        eta=Math.sqrt(numerator/denom);
+        double eta_tmp=0.0;Ra[i]=0.0;
+        for(int j=0;j<noOfCatAttrs;j++)
+        {
+            eta_tmp+=etaMatrix[NumAttrs[i]][CatAttrs[j]];
+        }
+        if(noOfCatAttrs>0) ;Ra[i]=eta_tmp/(double)noOfCatAttrs;
     }
-//    System.out.println("Between "+nAttr+" and "+cAttr+" is: "+eta);
-    return eta;
+}
+
+/*
+ * The method adds the column of a newly discretized attribute to the eta matrix
+ * of the numerical attributes that are not discretized yet.
+ */
+private void updateEta(int cAttr)
+{
+    int []cAttrs={cAttr};
+    forEachIndex(noOfAttrs, i -> {
+        if(attrNType[i]==1)
+        {
+            calEtaGrouped(i,cAttrs,1);
+        }
+    });
 }
 
 
@@ -1,69 +1,180 @@
-/*
- * To change this license header, choose License Headers in Project Properties.
- * To change this template file, choose Tools | Templates
- * and open the template in the editor.
- */
-package lfd;
-
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.util.logging.Level;
-import java.util.logging.Logger;
-/**
- * Discretization is the process of converting numerical values into categorical values. We propose a new data-driven discretization technique called low frequency discretizer (LFD) that does not require any user input. LFD uses low frequency values as cut points and thus reduces the information loss due to discretization. It uses all other categorical attributes and any numerical attribute that has already been categorized. It considers that the influence of an attribute in discretization of another attribute depends on the strength of their relationship. 
- * 
- * <h2>Reference</h2>
- * 
- * Rahman, M. G. and Islam, M. Z. (2016): Discretization of Continuous Attributes Through Low Frequency Numerical Values and Attribute Interdependency. Expert Systems with Applications, 45, 410-423. http://dx.doi.org/10.1016/j.eswa.2015.10.005.
- *  
- * @author Md Geaur Rahman <https://csusap.csu.edu.au/~grahman/>
- */
-
-public class Main {
-        /** command line reader */
-    BufferedReader stdIn;
-        /** class name, used in logging errors */
-    static String className = lfd.Main.class.getName();
-    
-    public Main()
-    {
-        stdIn = new BufferedReader(new InputStreamReader(System.in));
-    }
-    /**
-     * @param args the command line arguments
-     */
-    public static void main(String[] args) {
-        Main terminal=new Main();
-        String fileAttrInfo = terminal.inputFileName("Please enter the name of the file containing the 2 line attribute information.(example: c:\\data\\attrinfo.txt?)");
-        String fileDataFileIn= terminal.inputFileName("Please enter the name of the data file having numerical attributes: (example: c:\\data\\data.txt?)");
-        String fileOutput = terminal.inputFileName("Please enter the name of the output file: (example: c:\\data\\out.txt?)");
-        //call LFD              
-        LFD fimus=new LFD();
-        fimus.runLFD(fileAttrInfo, fileDataFileIn, fileOutput);
-        System.out.println("\nData discretization by LFD is done. The completed data set is written to: \n"+fileOutput);
-    }
-      
-
-    /**
-     * Given a message to display to the user, ask user to enter a file name.
-     *
-     * @param message message to user prompting for filename
-     * @return filename entered by user
-     */
-    private String inputFileName(String message)
-    {
-        String fileName = "";
-        try
-        {
-            System.out.println(message);
-            fileName = stdIn.readLine();
-        }
-        catch (IOException ex)
-        {
-            Logger.getLogger(className).log(Level.SEVERE, null, ex);
-        }
-        return fileName;
-    }
-
-}
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package lfd;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+/**
+ * Discretization is the process of converting numerical values into categorical values. We propose a new data-driven discretization technique called low frequency discretizer (LFD) that does not require any user input. LFD uses low frequency values as cut points and thus reduces the information loss due to discretization. It uses all other categorical attributes and any numerical attribute that has already been categorized. It considers that the influence of an attribute in discretization of another attribute depends on the strength of their relationship. 
+ * 
+ * <h2>Reference</h2>
+ * 
+ * Rahman, M. G. and Islam, M. Z. (2016): Discretization of Continuous Attributes Through Low Frequency Numerical Values and Attribute Interdependency. Expert Systems with Applications, 45, 410-423. http://dx.doi.org/10.1016/j.eswa.2015.10.005.
+ *  
+ * @author Md Geaur Rahman <https://csusap.csu.edu.au/~grahman/>
+ */
+
+public class Main {
+        /** command line reader */
+    BufferedReader stdIn;
+        /** class name, used in logging errors */
+    static String className = lfd.Main.class.getName();
+    
+    public Main()
+    {
+        stdIn = new BufferedReader(new InputStreamReader(System.in));
+    }
+    /**
+     * @param args the command line arguments: optional settings followed by
+     * the attribute file, the data file and the output file. File names that
+     * are not given are asked for.
+     * <ul>
+     * <li>-threads n : size of the fork/join pool and no. of chunks parsed at a time, 1 runs serially</li>
+     * <li>-speculate : discretize the next-ranked attributes speculatively</li>
+     * <li>-exhaustive : score every candidate cut point in every greedy step</li>
+     * <li>-coarse : coarse-to-fine selection of the cut points instead of the exact one</li>
+     * <li>-boundary : drop the candidate cut points that are not boundary points</li>
+     * <li>-sketch e : candidate cut points from fixed-memory sketches with error bound e</li>
+     * <li>-budget ms : wall-clock budget of the discretization in milliseconds</li>
+     * <li>-stream : discretize the data file without loading it, through temporary files; the
+     * output file can be - for the standard output</li>
+     * <li>-apply in out : discretize the file in with the cut points found into the file out,
+     * - for the standard input or output</li>
+     * <li>-plan : choose the strategy from a profile of the data set and the budgets</li>
+     * <li>-memory mb : memory budget of the planner in megabytes</li>
+     * <li>-sample n : fit the cut points on a random sample of n records</li>
+     * <li>-stratified : with -sample, sample every class in proportion to its size</li>
+     * </ul>
+     */
+    public static void main(String[] args) {
+        Main terminal=new Main();
+        LFD fimus=new LFD();
+        String []files=new String[3];
+        int nf=0;
+        boolean coarse=false;
+        String sketch="";
+        int sampleSize=0;
+        boolean stratified=false;
+        boolean plan=false;
+        boolean stream=false;
+        String applyIn=null, applyOut=null;
+        long memory=0;
+        for(int i=0;i<args.length;i++)
+        {
+            if(args[i].equals("-threads") && i+1<args.length)
+            {
+                fimus.setParallelism(Integer.parseInt(args[++i]));
+            }
+            else if(args[i].equals("-speculate"))
+            {
+                fimus.setSpeculative(true);
+            }
+            else if(args[i].equals("-exhaustive"))
+            {
+                fimus.setLazyGreedy(false);
+            }
+            else if(args[i].equals("-sketch") && i+1<args.length)
+            {
+                fimus.setSketch(Double.parseDouble(args[++i]));
+                sketch=" on sketch candidates (e="+args[i]+")";
+            }
+            else if(args[i].equals("-budget") && i+1<args.length)
+            {
+                fimus.setTimeBudget(Long.parseLong(args[++i]));
+            }
+            else if(args[i].equals("-stream"))
+            {
+                stream=true;
+            }
+            else if(args[i].equals("-apply") && i+2<args.length)
+            {
+                applyIn=args[++i];
+                applyOut=args[++i];
+            }
+            else if(args[i].equals("-plan"))
+            {
+                plan=true;
+            }
+            else if(args[i].equals("-memory") && i+1<args.length)
+            {
+                memory=Long.parseLong(args[++i])*1024L*1024L;
+            }
+            else if(args[i].equals("-sample") && i+1<args.length)
+            {
+                sampleSize=Integer.parseInt(args[++i]);
+            }
+            else if(args[i].equals("-stratified"))
+            {
+                stratified=true;
+            }
+            else if(args[i].equals("-boundary"))
+            {
+                fimus.setBoundaryPruning(true);
+            }
+            else if(args[i].equals("-coarse"))
+            {
+                fimus.setCoarseToFine(true);
+                coarse=true;
+            }
+            else if(nf<3)
+            {
+                files[nf]=args[i];nf++;
+            }
+        }
+        String fileAttrInfo = nf>0?files[0]:terminal.inputFileName("Please enter the name of the file containing the 2 line attribute information.(example: c:\\data\\attrinfo.txt?)");
+        String fileDataFileIn= nf>1?files[1]:terminal.inputFileName("Please enter the name of the data file having numerical attributes: (example: c:\\data\\data.txt?)");
+        String fileOutput = nf>2?files[2]:terminal.inputFileName("Please enter the name of the output file: (example: c:\\data\\out.txt?)");
+        fimus.setSampling(sampleSize,stratified);
+        fimus.setPlanning(plan,memory);
+        //call LFD              
+        if(stream)
+        {
+            fimus.runLFDStreaming(fileAttrInfo, fileDataFileIn, fileOutput);
+        }
+        else
+        {
+            fimus.runLFD(fileAttrInfo, fileDataFileIn, fileOutput);
+        }
+        if(applyIn!=null)fimus.transform(applyIn, applyOut);
+        //keep the standard output for the data when it is written there
+        PrintStream report=fileOutput.equals("-") || "-".equals(applyOut)?System.err:System.out;
+        report.println("\nData discretization by LFD is done. The completed data set is written to: \n"+fileOutput
+                +(applyIn!=null?"\nThe discretized "+applyIn+" is written to: \n"+applyOut:""));
+        report.println("Candidate cut points scored: "+fimus.getEvaluations()
+                +", skipped: "+fimus.getSkippedEvaluations()+", pruned: "+fimus.getPrunedCandidates());
+        String selection=(coarse?"coarse-to-fine":"exact")+" selection"+sketch
+                +(sampleSize>0?" on a"+(stratified?" stratified":"")+" sample of "+sampleSize+" records":"");
+        if(plan)selection=(coarse?"coarse-to-fine":"exact")+" selection of the planned strategy";
+        report.print("Objective reached by the "+selection+":\n"+fimus.getObjectiveReport());
+    }
+      
+
+    /**
+     * Given a message to display to the user, ask user to enter a file name.
+     *
+     * @param message message to user prompting for filename
+     * @return filename entered by user
+     */
+    private String inputFileName(String message)
+    {
+        String fileName = "";
+        try
+        {
+            System.out.println(message);
+            fileName = stdIn.readLine();
+        }
+        catch (IOException ex)
+        {
+            Logger.getLogger(className).log(Level.SEVERE, null, ex);
+        }
+        return fileName;
+    }
+
+}
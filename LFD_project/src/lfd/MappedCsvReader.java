@@ -0,0 +1,741 @@
+package lfd;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Reader of a data file into columns, working on the bytes of the memory-mapped
+ * file. The file is cut into chunks of byte ranges that start after a line
+ * break, the chunks are parsed in parallel into columns of their own, and the
+ * columns are concatenated in the order of the chunks, so the records keep the
+ * order of the file. A chunk is mapped on its own and is at most WINDOW bytes
+ * plus the rest of its last line, so files over 2 GB are read too.
+ *
+ * Only the columns of the projection are parsed by read, the values of the
+ * other attributes are skipped over. Their columns are materialized later, on
+ * request, from the mapped chunks and the record positions found by read.
+ *
+ * The records are split as readFileAs2DArray splits them: lines end at '\n' or
+ * '\r', the values are separated by any of " ,\t\n\r\f" and the first line
+ * gives the no. of attributes. Blank lines are skipped. Numerical values are
+ * parsed from the bytes, exactly as Double.parseDouble parses them. A
+ * categorical value is looked up by its bytes; only a new value becomes a
+ * String. The delimiters are found on the bytes, so the default charset has to
+ * encode them in one byte each, as UTF-8 and the ISO-8859 charsets do.
+ */
+class MappedCsvReader
+{
+    private static final long WINDOW=1L<<30;//largest chunk mapped at a time
+    private static final long MIN_CHUNK=1L<<22;//smallest chunk worth a task of its own
+    private static final double []POW10=new double[23];//the powers of ten a double holds exactly
+    static
+    {
+        POW10[0]=1.0;
+        for(int k=1;k<POW10.length;k++)
+        {
+            POW10[k]=POW10[k-1]*10.0;
+        }
+    }
+
+    private boolean []numerical;//null->every value is kept as it is, missing ones too
+    private boolean []projection;//projection[a]: attribute a is parsed by read, null->all are
+    private int threads;
+    private long chunkSize;//bytes of a chunk, 0->chosen from the file size and threads
+    private Charset charset=Charset.defaultCharset();
+    private File file;
+    private int noOfAttrs;
+    private int []projected;//attributes parsed by read
+    private List<Chunk> chunks;//chunks of the file, null->every column is parsed
+
+    /**
+     * Codes of the byte strings of a categorical attribute, in order of first
+     * appearance; missing values get -1.
+     */
+    private class Dictionary
+    {
+        private byte [][]keys=new byte[64][];
+        private int []codes=new int[64];
+        private int size;
+        private String []values=new String[16];
+        private int noOfValues;
+
+        int code(MappedByteBuffer buf, int from, int to)
+        {
+            int h=hash(buf,from,to);
+            int mask=keys.length-1;
+            int slot=h & mask;
+            while(keys[slot]!=null)
+            {
+                if(equal(keys[slot],buf,from,to))return codes[slot];
+                slot=(slot+1) & mask;
+            }
+            byte []key=new byte[to-from];
+            for(int i=from;i<to;i++)
+            {
+                key[i-from]=buf.get(i);
+            }
+            String v=new String(key,charset);
+            int code=-1;
+            if(numerical==null || LFD.isMissing(v)==0)
+            {
+                if(noOfValues==values.length)values=Arrays.copyOf(values,2*noOfValues);
+                values[noOfValues]=v;
+                code=noOfValues;
+                noOfValues++;
+            }
+            keys[slot]=key;
+            codes[slot]=code;
+            size++;
+            if(2*size>keys.length)grow();
+            return code;
+        }
+
+        private void grow()
+        {
+            byte [][]oldKeys=keys;
+            int []oldCodes=codes;
+            keys=new byte[2*oldKeys.length][];
+            codes=new int[keys.length];
+            int mask=keys.length-1;
+            for(int s=0;s<oldKeys.length;s++)
+            {
+                if(oldKeys[s]==null)continue;
+                int slot=hash(oldKeys[s]) & mask;
+                while(keys[slot]!=null)
+                {
+                    slot=(slot+1) & mask;
+                }
+                keys[slot]=oldKeys[s];
+                codes[slot]=oldCodes[s];
+            }
+        }
+
+        String []values()
+        {
+            return Arrays.copyOf(values,noOfValues);
+        }
+    }
+
+    /**
+     * The records of one byte range of the file, parsed into columns with
+     * dictionaries of their own. The mapping and the start of every record
+     * are kept while there are columns to be parsed later.
+     */
+    private class Chunk implements Callable<Chunk>
+    {
+        private long from, to;
+        private MappedByteBuffer buf;
+        private int []lines;//lines[r]: position of record r in buf
+        private ColumnarData data;
+        private Dictionary []dictionaries;
+        private int []start=new int[noOfAttrs], end=new int[noOfAttrs];//values of the current line
+        private int next;//position after the current line
+
+        Chunk(long from, long to)
+        {
+            this.from=from;
+            this.to=to;
+        }
+
+        /*
+         * find the records and parse the projected columns
+         */
+        @Override
+        public Chunk call() throws IOException
+        {
+            try(RandomAccessFile raf=new RandomAccessFile(file,"r"); FileChannel channel=raf.getChannel())
+            {
+                buf=channel.map(FileChannel.MapMode.READ_ONLY,from,to-from);
+            }
+            data=new ColumnarData(noOfAttrs);
+            int capacity=1024;
+            allocate(projected,capacity);
+            lines=new int[capacity];
+            int limit=(int)(to-from);
+            int r=0;
+            for(int i=0;i<limit;i=next)
+            {
+                int n=split(i,limit,noOfAttrs,true);
+                if(n==0)continue;
+                if(n<noOfAttrs)
+                {
+                    throw new IOException("The line at byte "+(from+i)+" of "+file+" has "+n+" of "+noOfAttrs+" values");
+                }
+                if(r==capacity)
+                {
+                    capacity=capacity<(1<<29)?2*capacity:Integer.MAX_VALUE-8;
+                    resize(projected,capacity);
+                    lines=Arrays.copyOf(lines,capacity);
+                }
+                lines[r]=i;
+                store(projected,r);
+                r++;
+            }
+            data.noOfRecords=r;
+            resize(projected,r);
+            finish(projected);
+            if(projected.length==noOfAttrs)
+            {
+                buf=null;
+                lines=null;
+            }
+            else
+            {
+                lines=Arrays.copyOf(lines,r);
+            }
+            return this;
+        }
+
+        /*
+         * parse the columns of attributes that were not projected, the values
+         * after the last of them are not looked at
+         */
+        Chunk parse(int []attrs)
+        {
+            allocate(attrs,data.noOfRecords);
+            int last=0;
+            for(int a:attrs)
+            {
+                last=Math.max(last,a);
+            }
+            int limit=(int)(to-from);
+            for(int r=0;r<data.noOfRecords;r++)
+            {
+                split(lines[r],limit,last+1,false);
+                store(attrs,r);
+            }
+            finish(attrs);
+            return this;
+        }
+
+        /*
+         * Find the values of the line at position i, up to max of them. The
+         * bytes of the line after them are skipped only to find the next line.
+         *
+         * @return no. of values found
+         */
+        private int split(int i, int limit, int max, boolean toNextLine)
+        {
+            int n=0;
+            while(i<limit && !lineEnd(buf.get(i)))
+            {
+                if(delimiter(buf.get(i)))
+                {
+                    i++;
+                    continue;
+                }
+                if(n==max)
+                {
+                    if(!toNextLine)return n;
+                    while(i<limit && !lineEnd(buf.get(i)))i++;
+                    break;
+                }
+                int first=i;
+                while(i<limit && !delimiter(buf.get(i)))i++;
+                start[n]=first;end[n]=i;n++;
+            }
+            next=i+1;
+            return n;
+        }
+
+        private void allocate(int []attrs, int capacity)
+        {
+            if(dictionaries==null)dictionaries=new Dictionary[noOfAttrs];
+            for(int a:attrs)
+            {
+                if(isNumerical(a))
+                {
+                    data.numColumns[a]=new double[capacity];
+                }
+                else
+                {
+                    data.catCodes[a]=new int[capacity];
+                    dictionaries[a]=new Dictionary();
+                }
+            }
+        }
+
+        private void resize(int []attrs, int capacity)
+        {
+            for(int a:attrs)
+            {
+                if(isNumerical(a))
+                {
+                    data.numColumns[a]=Arrays.copyOf(data.numColumns[a],capacity);
+                }
+                else
+                {
+                    data.catCodes[a]=Arrays.copyOf(data.catCodes[a],capacity);
+                }
+            }
+        }
+
+        /*
+         * values of the current line as record r
+         */
+        private void store(int []attrs, int r)
+        {
+            for(int a:attrs)
+            {
+                if(isNumerical(a))
+                {
+                    data.numColumns[a][r]=parseValue(buf,start[a],end[a]);
+                }
+                else
+                {
+                    data.catCodes[a][r]=dictionaries[a].code(buf,start[a],end[a]);
+                }
+            }
+        }
+
+        private void finish(int []attrs)
+        {
+            for(int a:attrs)
+            {
+                if(!isNumerical(a))
+                {
+                    data.domainValues[a]=dictionaries[a].values();
+                    dictionaries[a]=null;
+                }
+            }
+        }
+    }
+
+    /*
+     * @param numerical numerical[a]: attribute a is numerical
+     * @param projection projection[a]: attribute a is parsed by read, the
+     * others when they are materialized; null->all are parsed by read
+     * @param threads no. of chunks parsed at a time
+     */
+    MappedCsvReader(boolean []numerical, boolean []projection, int threads)
+    {
+        this.numerical=numerical;
+        this.projection=projection;
+        this.threads=Math.max(threads,1);
+    }
+
+    /*
+     * cut the file into chunks of about the given no. of bytes instead of the
+     * size chosen from the file size and the no. of threads, 0 chooses it
+     */
+    void setChunkSize(long bytes)
+    {
+        chunkSize=Math.max(bytes,0L);
+    }
+
+    /*
+     * the values of a file as readFileAs2DArray returns them, e.g. of an
+     * attribute information file
+     */
+    static String [][]readRecords(File file, int threads) throws IOException
+    {
+        ColumnarData data=new MappedCsvReader(null,null,threads).read(file);
+        String [][]records=new String[data.noOfRecords][data.noOfAttrs];
+        for(int a=0;a<data.noOfAttrs;a++)
+        {
+            for(int i=0;i<data.noOfRecords;i++)
+            {
+                records[i][a]=data.domainValues[a][data.catCodes[a][i]];
+            }
+        }
+        return records;
+    }
+
+    /*
+     * read the records of the data file and the columns of the projection
+     */
+    ColumnarData read(File file) throws IOException
+    {
+        this.file=file;
+        chunks=new ArrayList<>();
+        try(RandomAccessFile raf=new RandomAccessFile(file,"r"); FileChannel channel=raf.getChannel())
+        {
+            long size=channel.size();
+            noOfAttrs=countFirstValues(channel,size);
+            if(noOfAttrs==0)throw new IOException("The file "+file+" is empty");
+            long step=chunkSize>0?Math.min(chunkSize,WINDOW)
+                    :threads==1?WINDOW:Math.min(WINDOW,Math.max(MIN_CHUNK,size/(4L*threads)+1));
+            long from=0;
+            while(from<size)
+            {
+                long to=nextLine(channel,size,Math.min(from+step,size));
+                if(to-from>Integer.MAX_VALUE)throw new IOException("A line of "+file+" is longer than "+WINDOW+" bytes");
+                chunks.add(new Chunk(from,to));
+                from=to;
+            }
+        }
+        int k=0;
+        projected=new int[noOfAttrs];
+        for(int a=0;a<noOfAttrs;a++)
+        {
+            if(projection==null || projection[a])
+            {
+                projected[k]=a;k++;
+            }
+        }
+        projected=Arrays.copyOf(projected,k);
+        List<Callable<Chunk>> tasks=new ArrayList<>(chunks);
+        run(tasks);
+        long total=0;
+        for(Chunk chunk:chunks)
+        {
+            total+=chunk.data.noOfRecords;
+        }
+        if(total>Integer.MAX_VALUE-8)throw new IOException("The file "+file+" has more than "+(Integer.MAX_VALUE-8)+" records");
+        ColumnarData data=new ColumnarData(noOfAttrs);
+        data.noOfRecords=(int)total;
+        concatenate(data,projected);
+        if(k<noOfAttrs)
+        {
+            data.source=this;
+        }
+        else
+        {
+            chunks=null;
+        }
+        return data;
+    }
+
+    /*
+     * parse the columns of the given attributes in one pass over the records,
+     * the columns in memory already are left as they are
+     */
+    void materialize(ColumnarData data, int []attrs) throws IOException
+    {
+        int k=0;
+        int []missing=new int[attrs.length];
+        for(int a:attrs)
+        {
+            if(data.numColumns[a]==null && data.catCodes[a]==null)
+            {
+                missing[k]=a;k++;
+            }
+        }
+        if(k==0)return;
+        int []parsed=Arrays.copyOf(missing,k);
+        Arrays.sort(parsed);
+        List<Callable<Chunk>> tasks=new ArrayList<>();
+        for(Chunk chunk:chunks)
+        {
+            tasks.add(() -> chunk.parse(parsed));
+        }
+        run(tasks);
+        concatenate(data,parsed);
+    }
+
+    /*
+     * run the tasks of the chunks, in parallel if there are several
+     */
+    private void run(List<Callable<Chunk>> tasks) throws IOException
+    {
+        if(tasks.size()==1 || threads==1)
+        {
+            for(Callable<Chunk> task:tasks)
+            {
+                try
+                {
+                    task.call();
+                }
+                catch(IOException | RuntimeException e)
+                {
+                    throw e;
+                }
+                catch(Exception e)
+                {
+                    throw new IOException("The file "+file+" could not be read: "+e,e);
+                }
+            }
+            return;
+        }
+        ForkJoinPool pool=new ForkJoinPool(threads);
+        try
+        {
+            for(Future<Chunk> done:pool.invokeAll(tasks))
+            {
+                done.get();
+            }
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Reading "+file+" was interrupted");
+        }
+        catch(ExecutionException e)
+        {
+            if(e.getCause() instanceof IOException)throw (IOException)e.getCause();
+            throw new IOException("The file "+file+" could not be read: "+e.getCause(),e.getCause());
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+    /*
+     * the columns of the chunks one after another; the codes of a categorical
+     * attribute are renumbered into the order of first appearance in the file
+     */
+    private void concatenate(ColumnarData data, int []attrs)
+    {
+        int n=data.noOfRecords;
+        for(int a:attrs)
+        {
+            if(chunks.size()==1)
+            {
+                ColumnarData part=chunks.get(0).data;
+                data.numColumns[a]=part.numColumns[a];
+                data.catCodes[a]=part.catCodes[a];
+                data.domainValues[a]=part.domainValues[a];
+            }
+            else if(isNumerical(a))
+            {
+                double []col=new double[n];
+                int pos=0;
+                for(Chunk chunk:chunks)
+                {
+                    double []part=chunk.data.numColumns[a];
+                    System.arraycopy(part,0,col,pos,part.length);
+                    pos+=part.length;
+                }
+                data.numColumns[a]=col;
+            }
+            else
+            {
+                HashMap<String,Integer> dictionary=new HashMap<String,Integer>();
+                List<String> values=new ArrayList<>();
+                int []col=new int[n];
+                int pos=0;
+                for(Chunk chunk:chunks)
+                {
+                    String []domain=chunk.data.domainValues[a];
+                    int []code=new int[domain.length];
+                    for(int c=0;c<domain.length;c++)
+                    {
+                        Integer g=dictionary.get(domain[c]);
+                        if(g==null)
+                        {
+                            g=values.size();
+                            dictionary.put(domain[c],g);
+                            values.add(domain[c]);
+                        }
+                        code[c]=g;
+                    }
+                    int []part=chunk.data.catCodes[a];
+                    for(int i=0;i<part.length;i++)
+                    {
+                        col[pos+i]=part[i]<0?-1:code[part[i]];
+                    }
+                    pos+=part.length;
+                }
+                data.catCodes[a]=col;
+                data.domainValues[a]=values.toArray(new String[values.size()]);
+            }
+            for(Chunk chunk:chunks)
+            {
+                chunk.data.numColumns[a]=null;
+                chunk.data.catCodes[a]=null;
+                chunk.data.domainValues[a]=null;
+            }
+        }
+    }
+
+    /*
+     * no. of values of the first line that is not blank, 0->no such line
+     */
+    private static int countFirstValues(FileChannel channel, long size) throws IOException
+    {
+        ByteBuffer buf=ByteBuffer.allocate(1<<16);
+        int n=0;
+        boolean inValue=false;
+        for(long pos=0;pos<size;)
+        {
+            buf.clear();
+            int read=channel.read(buf,pos);
+            if(read<0)break;
+            for(int i=0;i<read;i++)
+            {
+                byte b=buf.get(i);
+                if(lineEnd(b) && n>0)return n;
+                if(!delimiter(b) && !inValue)n++;
+                inValue=!delimiter(b);
+            }
+            pos+=read;
+        }
+        return n;
+    }
+
+    /*
+     * position after the first line break at or after pos-1, size if there is
+     * none; the next chunk starts there
+     */
+    private static long nextLine(FileChannel channel, long size, long pos) throws IOException
+    {
+        if(pos>=size)return size;
+        ByteBuffer buf=ByteBuffer.allocate(1<<16);
+        for(long p=pos-1;p<size;)
+        {
+            buf.clear();
+            int read=channel.read(buf,p);
+            if(read<0)break;
+            for(int i=0;i<read;i++)
+            {
+                if(lineEnd(buf.get(i)))return p+i+1;
+            }
+            p+=read;
+        }
+        return size;
+    }
+
+    private boolean isNumerical(int a)
+    {
+        return numerical!=null && numerical[a];
+    }
+
+    /*
+     * Value of a numerical attribute, NaN->missing. A plain decimal of at most
+     * 15 significant digits and a power of ten up to 22 is a product or
+     * quotient of two doubles that are exact, so one rounding gives the value
+     * of Double.parseDouble. Anything else is decoded and parsed by it.
+     */
+    private double parseValue(MappedByteBuffer buf, int from, int to)
+    {
+        int i=from;
+        boolean negative=false;
+        if(i<to && (buf.get(i)=='-' || buf.get(i)=='+'))
+        {
+            negative=buf.get(i)=='-';
+            i++;
+        }
+        long m=0;
+        int digits=0, scale=0, exp=0;
+        boolean any=false, dot=false;
+        for(;i<to;i++)
+        {
+            byte b=buf.get(i);
+            if(b>='0' && b<='9')
+            {
+                any=true;
+                if(m==0 && b=='0')
+                {
+                    if(dot)scale++;
+                    continue;
+                }
+                if(digits==15)return parseString(buf,from,to);
+                m=m*10+(b-'0');
+                digits++;
+                if(dot)scale++;
+            }
+            else if(b=='.' && !dot)
+            {
+                dot=true;
+            }
+            else
+            {
+                break;
+            }
+        }
+        if(!any)return parseString(buf,from,to);
+        if(i<to)
+        {
+            byte b=buf.get(i);
+            if(b!='e' && b!='E')return parseString(buf,from,to);
+            i++;
+            boolean negExp=false;
+            if(i<to && (buf.get(i)=='-' || buf.get(i)=='+'))
+            {
+                negExp=buf.get(i)=='-';
+                i++;
+            }
+            if(i==to)return parseString(buf,from,to);
+            for(;i<to;i++)
+            {
+                b=buf.get(i);
+                if(b<'0' || b>'9' || exp>1000)return parseString(buf,from,to);
+                exp=exp*10+(b-'0');
+            }
+            if(negExp)exp=-exp;
+        }
+        int e10=exp-scale;
+        double v;
+        if(m==0)
+        {
+            v=0.0;
+        }
+        else if(e10>=0 && e10<POW10.length)
+        {
+            v=m*POW10[e10];
+        }
+        else if(e10<0 && -e10<POW10.length)
+        {
+            v=m/POW10[-e10];
+        }
+        else
+        {
+            return parseString(buf,from,to);
+        }
+        return negative?-v:v;
+    }
+
+    private double parseString(MappedByteBuffer buf, int from, int to)
+    {
+        byte []bytes=new byte[to-from];
+        for(int i=from;i<to;i++)
+        {
+            bytes[i-from]=buf.get(i);
+        }
+        String v=new String(bytes,charset);
+        if(LFD.isMissing(v)==1)return Double.NaN;
+        return Double.parseDouble(v);
+    }
+
+    private static boolean lineEnd(byte b)
+    {
+        return b=='\n' || b=='\r';
+    }
+
+    private static boolean delimiter(byte b)
+    {
+        return b==' ' || b==',' || b=='\t' || b=='\n' || b=='\r' || b=='\f';
+    }
+
+    private static int hash(MappedByteBuffer buf, int from, int to)
+    {
+        int h=0;
+        for(int i=from;i<to;i++)
+        {
+            h=31*h+buf.get(i);
+        }
+        return h^(h>>>16);
+    }
+
+    private static int hash(byte []key)
+    {
+        int h=0;
+        for(byte b:key)
+        {
+            h=31*h+b;
+        }
+        return h^(h>>>16);
+    }
+
+    private static boolean equal(byte []key, MappedByteBuffer buf, int from, int to)
+    {
+        if(key.length!=to-from)return false;
+        for(int i=0;i<key.length;i++)
+        {
+            if(key[i]!=buf.get(from+i))return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,169 @@
+package lfd;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * KLL quantile sketch of a stream of values in O(k log(n/k)) memory.
+ *
+ * Values are kept in levels of compactors, a value in level h stands for 2^h
+ * values of the stream. A full level is sorted and every second value,
+ * starting at a random offset, is promoted to the next level. The capacity of
+ * a level shrinks by 2/3 per level below the top one. The rank of any value is
+ * estimated within about 2n/k. The random offsets come from a fixed seed, so
+ * the same stream gives the same sketch.
+ */
+class QuantileSketch
+{
+    private int k;//capacity of the top level
+    private double [][]levels;//levels[h]: values of weight 2^h
+    private int []sizes;//no. of values in each level
+    private int noOfLevels;
+    private long n;//no. of values in the stream
+    private Random random=new Random(1);
+
+    QuantileSketch(int k)
+    {
+        this.k=Math.max(k,8);
+        levels=new double[1][];
+        levels[0]=new double[this.k];
+        sizes=new int[1];
+        noOfLevels=1;
+    }
+
+    /*
+     * add a value of the stream, NaN is ignored
+     */
+    void update(double v)
+    {
+        if(Double.isNaN(v))return;
+        append(0,v);
+        n++;
+        int total=0, capacity=0;
+        for(int h=0;h<noOfLevels;h++)
+        {
+            total+=sizes[h];
+            capacity+=capacity(h);
+        }
+        if(total>=capacity)compress();
+    }
+
+    /*
+     * no. of values in the stream
+     */
+    long count()
+    {
+        return n;
+    }
+
+    /*
+     * Values at the ranks i*n/m for i=1..m in ascending order, without
+     * duplicates. The smallest and largest values of the sketch are included.
+     */
+    double []quantiles(int m)
+    {
+        int total=0;
+        for(int h=0;h<noOfLevels;h++)
+        {
+            total+=sizes[h];
+        }
+        if(total==0)return new double[0];
+        double []values=new double[total];
+        long []weights=new long[total];
+        int p=0;
+        for(int h=0;h<noOfLevels;h++)
+        {
+            for(int i=0;i<sizes[h];i++)
+            {
+                values[p]=levels[h][i];weights[p]=1L<<h;p++;
+            }
+        }
+        Integer []order=new Integer[total];
+        for(int i=0;i<total;i++)
+        {
+            order[i]=i;
+        }
+        Arrays.sort(order,(a,b) -> Double.compare(values[a],values[b]));
+        long weight=0;
+        for(int i=0;i<total;i++)
+        {
+            weight+=weights[i];
+        }
+        double []q=new double[m+1];
+        int nq=0;
+        q[nq]=values[order[0]];nq++;
+        long cum=0;
+        int next=1;
+        for(int i=0;i<total && next<=m;i++)
+        {
+            double v=values[order[i]];
+            cum+=weights[order[i]];
+            while(next<=m && cum*(long)m>=next*weight)
+            {
+                if(v!=q[nq-1])
+                {
+                    q[nq]=v;nq++;
+                }
+                next++;
+            }
+        }
+        return Arrays.copyOf(q,nq);
+    }
+
+    private int capacity(int h)
+    {
+        int depth=noOfLevels-1-h;
+        return Math.max(2,(int)Math.ceil(k*Math.pow(2.0/3.0,depth)));
+    }
+
+    private void append(int h, double v)
+    {
+        if(h==noOfLevels)
+        {
+            levels=Arrays.copyOf(levels,noOfLevels+1);
+            sizes=Arrays.copyOf(sizes,noOfLevels+1);
+            levels[h]=new double[k];
+            noOfLevels++;
+        }
+        if(sizes[h]==levels[h].length)
+        {
+            levels[h]=Arrays.copyOf(levels[h],sizes[h]*2);
+        }
+        levels[h][sizes[h]]=v;
+        sizes[h]++;
+    }
+
+    /*
+     * compact the lowest level that is at its capacity
+     */
+    private void compress()
+    {
+        for(int h=0;h<noOfLevels;h++)
+        {
+            if(sizes[h]>=capacity(h))
+            {
+                double []level=levels[h];
+                int size=sizes[h];
+                Arrays.sort(level,0,size);
+                //an odd value out stays in the level
+                int even=size-(size%2);
+                int offset=random.nextInt(2);
+                for(int i=offset;i<even;i+=2)
+                {
+                    append(h+1,level[i]);
+                }
+                level=levels[h];
+                if(even<size)
+                {
+                    level[0]=level[size-1];
+                    sizes[h]=1;
+                }
+                else
+                {
+                    sizes[h]=0;
+                }
+                return;
+            }
+        }
+    }
+}
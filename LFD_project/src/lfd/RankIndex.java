@@ -0,0 +1,135 @@
+package lfd;
+
+import java.util.Arrays;
+
+/**
+ * Distinct values of a numerical attribute in ascending order with their
+ * frequencies, and the rank of every record's value among them.
+ *
+ * The index is built once per attribute. Ranks are dense integers 0..ds-1, so
+ * anything that depends on the value only, e.g. the block of a candidate cut
+ * point or the interval of a final cut point, can be computed once per
+ * distinct value and looked up per record.
+ */
+class RankIndex
+{
+    double []d;//distinct values in ascending order
+    int []fq;//fq[r]: no. of records having value d[r]
+    int ds;//no. of distinct values
+    int total;//no. of records having a value
+    int []rank;//rank[i]: index of the value of record i in d, -1->missing
+
+    /*
+     * sort the non-missing values of a column, count them run by run and rank
+     * every record
+     *
+     * @param nCol values of the numerical attribute, NaN->missing
+     * @param parallelSort sort with Arrays.parallelSort
+     */
+    RankIndex(double []nCol, boolean parallelSort)
+    {
+        int n=nCol.length;
+        double []values=new double[n];
+        for (int i=0;i<n;i++)
+        {
+            if(!Double.isNaN(nCol[i]))
+            {
+                values[total]=nCol[i];
+                total++;
+            }
+        }
+        if(parallelSort)
+        {
+            Arrays.parallelSort(values, 0, total);
+        }
+        else
+        {
+            Arrays.sort(values, 0, total);
+        }
+        d=new double[total];
+        fq=new int[total];
+        for(int i=0;i<total;i++)
+        {
+            if(ds>0 && values[i]==d[ds-1])
+            {
+                fq[ds-1]++;
+            }
+            else
+            {
+                d[ds]=values[i];
+                fq[ds]=1;
+                ds++;
+            }
+        }
+        rank=new int[n];
+        for(int i=0;i<n;i++)
+        {
+            rank[i]=rankOf(nCol[i]);
+        }
+    }
+
+    /*
+     * index of values counted elsewhere, without the ranks of the records
+     *
+     * @param values values, each one once
+     * @param counts counts[k]: no. of records having values[k]
+     * @param n no. of values
+     */
+    RankIndex(double []values, int []counts, int n)
+    {
+        double []sorted=Arrays.copyOf(values,n);
+        Arrays.sort(sorted);
+        d=new double[n];
+        for(int i=0;i<n;i++)
+        {
+            if(ds==0 || sorted[i]!=d[ds-1])
+            {
+                d[ds]=sorted[i];
+                ds++;
+            }
+        }
+        fq=new int[ds];
+        for(int k=0;k<n;k++)
+        {
+            fq[rankOf(values[k])]+=counts[k];
+            total+=counts[k];
+        }
+    }
+
+    /*
+     * rank of a value, -1 for a missing value or a value not in the index
+     */
+    int rankOf(double v)
+    {
+        if(Double.isNaN(v) || ds==0 || v>d[ds-1])return -1;
+        int lo=0, hi=ds-1;
+        while(lo<hi)
+        {
+            int mid=(lo+hi)>>>1;
+            if(d[mid]>=v)
+            {
+                hi=mid;
+            }
+            else
+            {
+                lo=mid+1;
+            }
+        }
+        if(d[lo]==v)return lo;
+        return -1;
+    }
+
+    /*
+     * map every record through a table indexed by rank, -1 for a missing value
+     */
+    int []lookup(int []ofRank)
+    {
+        int []out=new int[rank.length];
+        for(int i=0;i<rank.length;i++)
+        {
+            int r=rank[i];
+            out[i]=r>=0?ofRank[r]:-1;
+        }
+        return out;
+    }
+}
@@ -0,0 +1,95 @@
+package lfd;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Row-partitioned scan over the records of a data set. The records are split
+ * in halves down to chunks of at most CHUNK records; every chunk is counted
+ * into its own table and the two tables of a split are merged, the right one
+ * into the left one.
+ *
+ * The split points depend on the number of records only, so the merge order
+ * and therefore any floating point sum is the same whether the scan runs on a
+ * fork/join pool or serially. Data sets of up to CHUNK records are scanned in
+ * one piece.
+ */
+abstract class RowScan<T>
+{
+    static final int CHUNK=1<<16;
+
+    /*
+     * a new, empty table for one chunk of records
+     */
+    protected abstract T newTable();
+
+    /*
+     * count the records from..to-1 into the table
+     */
+    protected abstract void scan(T table, int from, int to);
+
+    /*
+     * add the counts of the second table to the first one
+     */
+    protected abstract void merge(T into, T table);
+
+    /*
+     * scan the records 0..noOfRecords-1, on the pool if it is not null
+     */
+    T run(ForkJoinPool pool, int noOfRecords)
+    {
+        if(pool==null || noOfRecords<=CHUNK)
+        {
+            return scanRange(0,noOfRecords);
+        }
+        ScanTask task=new ScanTask(0,noOfRecords);
+        if(ForkJoinTask.inForkJoinPool())
+        {
+            return task.invoke();
+        }
+        return pool.invoke(task);
+    }
+
+    private T scanRange(int from, int to)
+    {
+        if(to-from<=CHUNK)
+        {
+            T table=newTable();
+            scan(table,from,to);
+            return table;
+        }
+        int mid=(from+to)>>>1;
+        T left=scanRange(from,mid);
+        merge(left,scanRange(mid,to));
+        return left;
+    }
+
+    private class ScanTask extends RecursiveTask<T>
+    {
+        private static final long serialVersionUID=1L;
+        private int from, to;
+
+        ScanTask(int from, int to)
+        {
+            this.from=from;this.to=to;
+        }
+
+        @Override
+        protected T compute()
+        {
+            if(to-from<=CHUNK)
+            {
+                T table=newTable();
+                scan(table,from,to);
+                return table;
+            }
+            int mid=(from+to)>>>1;
+            ScanTask right=new ScanTask(mid,to);
+            right.fork();
+            T left=new ScanTask(from,mid).compute();
+            merge(left,right.join());
+            return left;
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package lfd;
+
+import java.util.Arrays;
+
+/**
+ * Cut point scorer for categorical attributes with a large domain. Only the
+ * non-zero cells of the contingency table are kept: the blocks of every code
+ * with their cumulative counts, and the codes and uncertainty terms of every
+ * accepted interval that has records.
+ *
+ * The entropy of a candidate adds the non-zero terms code by code and interval
+ * by interval, the order of the dense table; the skipped cells add 0.0, which
+ * does not change the sum.
+ */
+class SparseCutpointScorer extends CutpointScorer
+{
+    private int []codeStart;//entries of code c: codeStart[c]..codeStart[c+1]-1
+    private int []entryBlock;//block of an entry, ascending for every code
+    private int []entryCum;//no. of records of the code of an entry in blocks 0..entryBlock
+    private int [][]codes;//codes[j]: codes having records in interval j, ascending
+    private double [][]ent;//ent[j][k]: uncertainty term of the cell (codes[j][k],j)
+
+    /**
+     * Sparse block counts, hashed by code*ticp+block.
+     */
+    static class Counts extends BlockCounts
+    {
+        private CountMap counts=new CountMap();
+        private int cv, ticp;
+
+        Counts(int cv, int ticp)
+        {
+            this.cv=cv;this.ticp=ticp;
+        }
+
+        @Override
+        void add(int c, int b)
+        {
+            counts.add((long)c*ticp+b,1);
+        }
+
+        @Override
+        void merge(BlockCounts table)
+        {
+            counts.addAll(((Counts)table).counts);
+        }
+
+        @Override
+        CutpointScorer scorer(int []fcFlg)
+        {
+            return new SparseCutpointScorer(counts,cv,ticp,fcFlg);
+        }
+    }
+
+    private SparseCutpointScorer(CountMap table, int domainSize, int ticp, int []fcFlg)
+    {
+        cv=domainSize;
+        long []keys=table.sortedKeys();
+        int n=keys.length;
+        codeStart=new int[cv+1];
+        blockTotal=new int[ticp];
+        entryBlock=new int[n];
+        entryCum=new int[n];
+        M=0;
+        for(int e=0;e<n;e++)
+        {
+            int c=(int)(keys[e]/ticp);
+            int cnt=table.get(keys[e]);
+            codeStart[c+1]++;
+            entryBlock[e]=(int)(keys[e]%ticp);
+            blockTotal[entryBlock[e]]+=cnt;
+            entryCum[e]=cnt;
+            if(e>0 && keys[e-1]/ticp==c)entryCum[e]+=entryCum[e-1];
+            M+=cnt;
+        }
+        for(int c=0;c<cv;c++)
+        {
+            codeStart[c+1]+=codeStart[c];
+        }
+        for(int b=1;b<ticp;b++)
+        {
+            blockTotal[b]+=blockTotal[b-1];
+        }
+        initCuts(ticp,fcFlg);
+        codes=new int[ticp][];
+        ent=new double[ticp][];
+        int []cds=new int[cv];
+        double []terms=new double[cv];
+        double []caimOut=new double[1];
+        int []maxOut=new int[1];
+        for(int j=0;j<noi;j++)
+        {
+            int nnz=fillInterval(j==0?-1:cuts[j],cuts[j+1],cds,terms,caimOut,maxOut,0);
+            codes[j]=Arrays.copyOf(cds,nnz);
+            ent[j]=Arrays.copyOf(terms,nnz);
+            caim[j]=caimOut[0];
+            maxCount[j]=maxOut[0];
+        }
+    }
+
+    @Override
+    double []score(int t, Buffer buf)
+    {
+        int j=findSplitInterval(t);
+        double []caimOut=new double[2];
+        int []maxOut=new int[2];
+        int nl=fillInterval(j==0?-1:cuts[j],t,buf.left,buf.leftEnt,caimOut,maxOut,0);
+        int nr=fillInterval(t,cuts[j+1],buf.right,buf.rightEnt,caimOut,maxOut,1);
+        double []CU=new double[2];
+        CU[0]=totalCaim(j,caimOut[0],caimOut[1]);
+        //the intervals in order with interval j replaced by its two halves
+        int m=noi+1;
+        int [][]lc=new int[m][];
+        double [][]le=new double[m][];
+        int []len=new int[m];
+        for(int k=0;k<m;k++)
+        {
+            if(k<j)
+            {
+                lc[k]=codes[k];le[k]=ent[k];len[k]=codes[k].length;
+            }
+            else if(k==j)
+            {
+                lc[k]=buf.left;le[k]=buf.leftEnt;len[k]=nl;
+            }
+            else if(k==j+1)
+            {
+                lc[k]=buf.right;le[k]=buf.rightEnt;len[k]=nr;
+            }
+            else
+            {
+                lc[k]=codes[k-1];le[k]=ent[k-1];len[k]=codes[k-1].length;
+            }
+        }
+        CU[1]=mergedEntropy(lc,le,len);
+        return CU;
+    }
+
+    @Override
+    double []scoreAccepted()
+    {
+        int []len=new int[noi];
+        for(int k=0;k<noi;k++)
+        {
+            len[k]=codes[k].length;
+        }
+        double []CU=new double[2];
+        CU[0]=totalCaim();
+        CU[1]=mergedEntropy(Arrays.copyOf(codes,noi),Arrays.copyOf(ent,noi),len);
+        return CU;
+    }
+
+    @Override
+    void split(int t)
+    {
+        int j=findSplitInterval(t);
+        int []cds=new int[cv];
+        double []terms=new double[cv];
+        double []caimOut=new double[2];
+        int []maxOut=new int[2];
+        int nl=fillInterval(j==0?-1:cuts[j],t,cds,terms,caimOut,maxOut,0);
+        int []lc=Arrays.copyOf(cds,nl);
+        double []le=Arrays.copyOf(terms,nl);
+        int nr=fillInterval(t,cuts[j+1],cds,terms,caimOut,maxOut,1);
+        System.arraycopy(codes, j+1, codes, j+2, noi-j-1);
+        System.arraycopy(ent, j+1, ent, j+2, noi-j-1);
+        codes[j]=lc;codes[j+1]=Arrays.copyOf(cds,nr);
+        ent[j]=le;ent[j+1]=Arrays.copyOf(terms,nr);
+        insertCut(j,t,caimOut[0],caimOut[1],maxOut[0],maxOut[1]);
+    }
+
+    @Override
+    boolean sameDistribution(int b)
+    {
+        long n1=blockCount(b), n2=blockCount(b+1);
+        if(n1==0 || n2==0)return true;
+        for(int c=0;c<cv;c++)
+        {
+            if(codeStart[c]==codeStart[c+1])continue;
+            long x=cumulative(c,b), y=cumulative(c,b+1)-x;
+            if(b>0)x-=cumulative(c,b-1);
+            if(x*n2!=y*n1)return false;
+        }
+        return true;
+    }
+
+    /*
+     * fill the codes having records in the blocks from+1..to and their
+     * uncertainty terms, from=-1 starts at block 0. The CAIM term and the
+     * largest class count of the interval are stored in caimOut[slot] and
+     * maxOut[slot].
+     *
+     * @return no. of codes filled
+     */
+    private int fillInterval(int from, int to, int []cds, double []terms, double []caimOut, int []maxOut,
+            int slot)
+    {
+        int colTotal=0, mxr=0, nnz=0;
+        for(int c=0;c<cv;c++)
+        {
+            if(codeStart[c]==codeStart[c+1])continue;
+            int n=cumulative(c,to);
+            if(from>=0)n-=cumulative(c,from);
+            if(n>0)
+            {
+                cds[nnz]=c;
+                terms[nnz]=uncertainty(n);
+                nnz++;
+                colTotal+=n;
+                if(n>mxr)mxr=n;
+            }
+        }
+        caimOut[slot]=caimTerm(mxr,colTotal);
+        maxOut[slot]=mxr;
+        return nnz;
+    }
+
+    /*
+     * no. of records of code c in blocks 0..b
+     */
+    private int cumulative(int c, int b)
+    {
+        int lo=codeStart[c], hi=codeStart[c+1]-1;
+        if(entryBlock[lo]>b)return 0;
+        while(lo<hi)
+        {
+            int mid=(lo+hi+1)>>>1;
+            if(entryBlock[mid]<=b)
+            {
+                lo=mid;
+            }
+            else
+            {
+                hi=mid-1;
+            }
+        }
+        return entryCum[lo];
+    }
+
+    /*
+     * sum the terms of sparse interval vectors by code, and by interval for
+     * the same code, with a heap over the interval cursors
+     */
+    private static double mergedEntropy(int [][]lc, double [][]le, int []len)
+    {
+        int m=lc.length;
+        int []pos=new int[m];
+        int []heap=new int[m];
+        int size=0;
+        for(int k=0;k<m;k++)
+        {
+            if(len[k]>0)
+            {
+                heap[size]=k;size++;
+                siftUp(heap,size-1,lc,pos);
+            }
+        }
+        double entrophy=0.0;
+        while(size>0)
+        {
+            int k=heap[0];
+            entrophy+=le[k][pos[k]];
+            pos[k]++;
+            if(pos[k]==len[k])
+            {
+                size--;
+                heap[0]=heap[size];
+            }
+            siftDown(heap,size,lc,pos);
+        }
+        return entrophy;
+    }
+
+    private static boolean before(int a, int b, int [][]lc, int []pos)
+    {
+        int ca=lc[a][pos[a]], cb=lc[b][pos[b]];
+        return ca<cb || (ca==cb && a<b);
+    }
+
+    private static void siftUp(int []heap, int i, int [][]lc, int []pos)
+    {
+        while(i>0)
+        {
+            int p=(i-1)>>>1;
+            if(!before(heap[i],heap[p],lc,pos))break;
+            int tmp=heap[i];heap[i]=heap[p];heap[p]=tmp;
+            i=p;
+        }
+    }
+
+    private static void siftDown(int []heap, int size, int [][]lc, int []pos)
+    {
+        int i=0;
+        while(true)
+        {
+            int l=2*i+1, r=l+1, s=i;
+            if(l<size && before(heap[l],heap[s],lc,pos))s=l;
+            if(r<size && before(heap[r],heap[s],lc,pos))s=r;
+            if(s==i)break;
+            int tmp=heap[i];heap[i]=heap[s];heap[s]=tmp;
+            i=s;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package lfd;
+
+import java.io.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.function.Function;
+
+/**
+ * Line by line transform of a text stream in three stages: a reader thread
+ * cuts the input into batches of lines, a pool of workers maps the lines of a
+ * batch, and the calling thread writes the mapped batches in input order.
+ *
+ * The stages are connected by bounded queues. The reader blocks once
+ * QUEUED_BATCHES batches are waiting for a worker or for the writer, so memory
+ * stays constant however large the input is, and a slow writer slows the
+ * reader down. The output has the records separated by "\n" with no newline
+ * after the last one, the format of the data files written by LFD.
+ */
+class TransformPipeline
+{
+    private static final int BATCH=4096;//lines per batch
+    private static final int QUEUED_BATCHES=4;//batches in a queue per worker
+    private int noOfWorkers;
+    private Function<String,String> mapper;
+
+    /*
+     * @param noOfWorkers no. of worker threads
+     * @param mapper output record of an input line, null->no record
+     */
+    TransformPipeline(int noOfWorkers, Function<String,String> mapper)
+    {
+        this.noOfWorkers=Math.max(noOfWorkers,1);
+        this.mapper=mapper;
+    }
+
+    /*
+     * transform the input to the output, the streams are not closed
+     *
+     * @return no. of records written
+     */
+    long run(BufferedReader in, Writer out) throws IOException
+    {
+        int capacity=QUEUED_BATCHES*noOfWorkers;
+        BlockingQueue<FutureTask<String[]>> work=new ArrayBlockingQueue<>(capacity);
+        BlockingQueue<FutureTask<String[]>> ordered=new ArrayBlockingQueue<>(capacity);
+        FutureTask<String[]> end=new FutureTask<>(() -> null);
+        IOException []readError=new IOException[1];
+        Thread reader=new Thread(() -> {
+            try
+            {
+                String []lines=new String[BATCH];
+                int n=0;
+                for(String line=in.readLine();line!=null;line=in.readLine())
+                {
+                    lines[n]=line;n++;
+                    if(n==BATCH)
+                    {
+                        submit(lines,n,work,ordered);
+                        lines=new String[BATCH];
+                        n=0;
+                    }
+                }
+                if(n>0)submit(lines,n,work,ordered);
+            }
+            catch(IOException e)
+            {
+                readError[0]=e;
+            }
+            catch(InterruptedException e)
+            {
+                //the writer gave up
+            }
+            finally
+            {
+                try
+                {
+                    for(int w=0;w<noOfWorkers;w++)
+                    {
+                        work.put(end);
+                    }
+                    ordered.put(end);
+                }
+                catch(InterruptedException e)
+                {
+                    //the writer gave up
+                }
+            }
+        },"lfd-reader");
+        Thread []workers=new Thread[noOfWorkers];
+        for(int w=0;w<noOfWorkers;w++)
+        {
+            workers[w]=new Thread(() -> {
+                try
+                {
+                    for(FutureTask<String[]> batch=work.take();batch!=end;batch=work.take())
+                    {
+                        batch.run();
+                    }
+                }
+                catch(InterruptedException e)
+                {
+                    //the writer gave up
+                }
+            },"lfd-worker-"+w);
+        }
+        reader.setDaemon(true);
+        reader.start();
+        for(Thread worker:workers)
+        {
+            worker.setDaemon(true);
+            worker.start();
+        }
+        long written=0;
+        try
+        {
+            for(FutureTask<String[]> batch=ordered.take();batch!=end;batch=ordered.take())
+            {
+                for(String rec:batch.get())
+                {
+                    if(rec==null)continue;
+                    if(written>0)out.write("\n");
+                    out.write(rec);
+                    written++;
+                }
+            }
+            out.flush();
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("The transform was interrupted");
+        }
+        catch(ExecutionException e)
+        {
+            throw new IOException("A record could not be transformed: "+e.getCause(),e.getCause());
+        }
+        finally
+        {
+            reader.interrupt();
+            for(Thread worker:workers)
+            {
+                worker.interrupt();
+            }
+        }
+        if(readError[0]!=null)throw readError[0];
+        return written;
+    }
+
+    /*
+     * queue a batch for the workers and, in input order, for the writer
+     */
+    private void submit(String []lines, int n, BlockingQueue<FutureTask<String[]>> work,
+            BlockingQueue<FutureTask<String[]>> ordered) throws InterruptedException
+    {
+        FutureTask<String[]> batch=new FutureTask<>(() -> {
+            String []recs=new String[n];
+            for(int i=0;i<n;i++)
+            {
+                recs[i]=mapper.apply(lines[i]);
+            }
+            return recs;
+        });
+        ordered.put(batch);
+        work.put(batch);
+    }
+}
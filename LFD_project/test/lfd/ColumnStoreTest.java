@@ -0,0 +1,99 @@
+package lfd;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * A scan of the column store has to give back the codes as they were
+ * appended, record by record, whatever the size of the blocks.
+ */
+public class ColumnStoreTest
+{
+    /*
+     * the codes of the scanned attributes in the order of the scan
+     */
+    private static int [][]scan(ColumnStore store, int []attrs)
+    {
+        List<int[][]> chunks=store.scan(attrs,new ColumnStore.Scan<List<int[][]>>()
+        {
+            @Override
+            protected List<int[][]> newTable()
+            {
+                return new ArrayList<>();
+            }
+
+            @Override
+            protected void scan(List<int[][]> table, int [][]cols, int n)
+            {
+                int [][]chunk=new int[cols.length][];
+                for(int k=0;k<cols.length;k++)
+                {
+                    chunk[k]=Arrays.copyOf(cols[k],n);
+                }
+                table.add(chunk);
+            }
+
+            @Override
+            protected void merge(List<int[][]> into, List<int[][]> table)
+            {
+                into.addAll(table);
+            }
+        });
+        int [][]codes=new int[attrs.length][store.getNoOfRecords()];
+        int at=0;
+        for(int [][]chunk:chunks)
+        {
+            for(int k=0;k<attrs.length;k++)
+            {
+                System.arraycopy(chunk[k],0,codes[k],at,chunk[k].length);
+            }
+            at+=chunk[0].length;
+        }
+        assertEquals(store.getNoOfRecords(),at);
+        return codes;
+    }
+
+    @Test
+    public void codesInAppendOrder() throws Exception
+    {
+        int n=200000, attrs=5;
+        Random random=new Random(9);
+        int [][]codes=new int[attrs][n];
+        for(long blockBytes:new long[]{1,1000,1L<<30})
+        {
+            try(ColumnStore store=new ColumnStore(attrs,blockBytes))
+            {
+                int []record=new int[attrs];
+                for(int i=0;i<n;i++)
+                {
+                    for(int a=0;a<attrs;a++)
+                    {
+                        //missing, one byte and several byte codes
+                        record[a]=codes[a][i]=random.nextInt(10)==0?-1:random.nextInt(a==0?2:1<<(7*a));
+                    }
+                    store.append(record);
+                }
+                store.finish();
+                int [][]all=scan(store,new int[]{0,1,2,3,4});
+                for(int a=0;a<attrs;a++)
+                {
+                    assertArrayEquals(codes[a],all[a]);
+                }
+                int [][]two=scan(store,new int[]{3,1});
+                assertArrayEquals(codes[3],two[0]);
+                assertArrayEquals(codes[1],two[1]);
+                int []table={5,4};
+                store.remap(0,table);
+                int []remapped=scan(store,new int[]{0})[0];
+                for(int i=0;i<n;i++)
+                {
+                    assertEquals(codes[0][i]<0?-1:table[codes[0][i]],remapped[i]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package lfd;
+
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * The dense and the sparse contingency tables have to give the same scores,
+ * bit for bit, whichever of them CutpointScorer.create picks.
+ */
+public class CutpointScorerTest
+{
+    /*
+     * greedy selection on both tables, every candidate scored by both
+     */
+    private static void assertSameScores(int cv, int ticp, int n, long seed)
+    {
+        Random random=new Random(seed);
+        CutpointScorer.BlockCounts dense=new DenseCutpointScorer.Counts(cv,ticp);
+        CutpointScorer.BlockCounts sparse=new SparseCutpointScorer.Counts(cv,ticp);
+        CutpointScorer.BlockCounts part=new SparseCutpointScorer.Counts(cv,ticp);
+        for(int i=0;i<n;i++)
+        {
+            //skewed codes leave many cells empty
+            int c=random.nextInt(4)==0?random.nextInt(cv):random.nextInt(Math.min(cv,3));
+            int b=random.nextInt(ticp);
+            dense.add(c,b);
+            if(i%2==0)sparse.add(c,b);else part.add(c,b);
+        }
+        sparse.merge(part);
+        int []fcFlg=new int[ticp];
+        fcFlg[0]=1;fcFlg[ticp-1]=1;
+        CutpointScorer d=dense.scorer(fcFlg), s=sparse.scorer(fcFlg);
+        CutpointScorer.Buffer buf=new CutpointScorer.Buffer(cv);
+        for(int step=0;step<Math.min(8,ticp-2);step++)
+        {
+            int best=-1;
+            double bestCaim=-1.0;
+            for(int t=0;t<ticp;t++)
+            {
+                if(fcFlg[t]==1)continue;
+                double []dcu=d.score(t,buf), scu=s.score(t,buf);
+                assertEquals(Double.doubleToLongBits(dcu[0]),Double.doubleToLongBits(scu[0]));
+                assertEquals(Double.doubleToLongBits(dcu[1]),Double.doubleToLongBits(scu[1]));
+                if(dcu[0]>bestCaim)
+                {
+                    bestCaim=dcu[0];best=t;
+                }
+            }
+            fcFlg[best]=1;
+            d.split(best);
+            s.split(best);
+        }
+    }
+
+    @Test
+    public void denseAndSparseTables()
+    {
+        assertSameScores(2,3,50,1);
+        assertSameScores(5,40,3000,2);
+        assertSameScores(300,120,5000,3);
+        assertSameScores(2000,30,500,4);//most codes never occur
+    }
+}
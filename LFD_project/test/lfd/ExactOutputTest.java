@@ -0,0 +1,207 @@
+package lfd;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Random;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ * Every exact way of running LFD has to write the output of the original
+ * implementation byte for byte. The reference files of the data sets in data/
+ * were written by it.
+ */
+public class ExactOutputTest
+{
+    private static final String []DATA_SETS={"sample","d1","d4","d8","ties"};
+    //output of the original implementation for generate(LARGE_ROWS,LARGE_SEED)
+    private static final int LARGE_ROWS=100000;
+    private static final long LARGE_SEED=7;
+    private static final String LARGE_MD5="4e6db9e0bda27b26f7bab3cf1359ef39";
+
+    @Rule
+    public TemporaryFolder tmp=new TemporaryFolder();
+
+    private interface Run
+    {
+        void run(LFD lfd, String attrFile, String dataFile, String outputFile) throws Exception;
+    }
+
+    /*
+     * run every data set and compare the output with its reference
+     */
+    private void assertExact(Run run) throws Exception
+    {
+        for(String name:DATA_SETS)
+        {
+            File out=tmp.newFile();
+            run.run(new LFD(),data(name+"_attr.txt"),data(name+"_data.txt"),out.getPath());
+            assertArrayEquals(name,Files.readAllBytes(new File(data(name+"_ref.txt")).toPath()),
+                    Files.readAllBytes(out.toPath()));
+        }
+    }
+
+    @Test
+    public void serial() throws Exception
+    {
+        assertExact((lfd,attr,data,out) -> {
+            lfd.setParallelism(1);
+            lfd.runLFD(attr,data,out);
+        });
+    }
+
+    @Test
+    public void parallel() throws Exception
+    {
+        assertExact((lfd,attr,data,out) -> {
+            lfd.setParallelism(4);
+            lfd.runLFD(attr,data,out);
+        });
+    }
+
+    @Test
+    public void speculative() throws Exception
+    {
+        assertExact((lfd,attr,data,out) -> {
+            lfd.setParallelism(4);
+            lfd.setSpeculative(true);
+            lfd.runLFD(attr,data,out);
+            //the work of discarded speculations is not counted
+            LFD plain=new LFD();
+            plain.setParallelism(4);
+            plain.runLFD(attr,data,tmp.newFile().getPath());
+            assertEquals(plain.getEvaluations(),lfd.getEvaluations());
+            assertEquals(plain.getSkippedEvaluations(),lfd.getSkippedEvaluations());
+            assertEquals(plain.getPrunedCandidates(),lfd.getPrunedCandidates());
+        });
+    }
+
+    @Test
+    public void allCandidatesScored() throws Exception
+    {
+        assertExact((lfd,attr,data,out) -> {
+            lfd.setLazyGreedy(false);
+            lfd.runLFD(attr,data,out);
+        });
+    }
+
+    @Test
+    public void streaming() throws Exception
+    {
+        assertExact((lfd,attr,data,out) -> lfd.runLFDStreaming(attr,data,out));
+    }
+
+    @Test
+    public void transform() throws Exception
+    {
+        assertExact((lfd,attr,data,out) -> {
+            lfd.runLFD(attr,data,tmp.newFile().getPath());
+            lfd.transform(data,out);
+        });
+    }
+
+    /*
+     * the file read in chunks of a few lines, serially and in parallel
+     */
+    @Test
+    public void mappedInTinyChunks() throws Exception
+    {
+        for(int threads:new int[]{1,4})
+        {
+            assertExact((lfd,attr,data,out) -> discretizeMapped(lfd,attr,data,out,threads,64));
+        }
+    }
+
+    /*
+     * a data set large enough for the rows to be counted in several parallel
+     * tasks
+     */
+    @Test
+    public void largeDataSet() throws Exception
+    {
+        File attr=tmp.newFile(), data=tmp.newFile();
+        generate(attr,data,LARGE_ROWS,LARGE_SEED);
+        File out=tmp.newFile();
+        LFD lfd=new LFD();
+        lfd.setParallelism(4);
+        lfd.setSpeculative(true);
+        lfd.runLFD(attr.getPath(),data.getPath(),out.getPath());
+        assertEquals(LARGE_MD5,md5(out));
+        discretizeMapped(new LFD(),attr.getPath(),data.getPath(),out.getPath(),4,1<<16);
+        assertEquals(LARGE_MD5,md5(out));
+        lfd=new LFD();
+        lfd.setParallelism(1);
+        lfd.runLFDStreaming(attr.getPath(),data.getPath(),out.getPath());
+        assertEquals(LARGE_MD5,md5(out));
+    }
+
+    private static void discretizeMapped(LFD lfd, String attrFile, String dataFile, String outputFile,
+            int threads, long chunkSize) throws IOException
+    {
+        String [][]attrInfo=MappedCsvReader.readRecords(new File(attrFile),1);
+        boolean []numerical=new boolean[attrInfo[0].length];
+        for(int i=0;i<numerical.length;i++)
+        {
+            numerical[i]=attrInfo[0][i].equals("1");
+        }
+        MappedCsvReader reader=new MappedCsvReader(numerical,numerical,threads);
+        reader.setChunkSize(chunkSize);
+        lfd.setParallelism(threads);
+        lfd.runDiscretization(reader.read(new File(dataFile)),attrInfo,0.2);
+        lfd.transform(dataFile,outputFile);
+    }
+
+    /*
+     * Random data set of a class, categorical and numerical attributes with
+     * missing values. Double.toString makes the file independent of the locale.
+     */
+    static void generate(File attrFile, File dataFile, int rows, long seed) throws IOException
+    {
+        try(BufferedWriter out=new BufferedWriter(new FileWriter(attrFile)))
+        {
+            out.write("2 0 1 1 1 0 0 1\nClass,C1,N0,N1,N3,C0,C2,N2,\n");
+        }
+        Random random=new Random(seed);
+        try(BufferedWriter out=new BufferedWriter(new FileWriter(dataFile)))
+        {
+            for(int i=0;i<rows;i++)
+            {
+                int c=random.nextInt(3);
+                StringBuilder line=new StringBuilder();
+                line.append('v').append(c);
+                line.append(",v").append((c+random.nextInt(2))%4);
+                line.append(',').append(missing(random,Double.toString(Math.round(10*(c+random.nextGaussian()))/10.0)));
+                line.append(',').append(missing(random,Integer.toString(random.nextInt(40)+5*c)));
+                line.append(',').append(missing(random,Double.toString(Math.round(10*(2*c+3*random.nextGaussian()))/10.0)));
+                line.append(",v").append(random.nextInt(5));
+                line.append(',').append(missing(random,"v"+(random.nextInt(3)==0?c:random.nextInt(3))));
+                line.append(',').append(Double.toString(Math.round(10*(c*random.nextDouble()-2))/10.0));
+                line.append('\n');
+                out.write(line.toString());
+            }
+        }
+    }
+
+    private static String missing(Random random, String value)
+    {
+        return random.nextInt(50)==0?"?":value;
+    }
+
+    static String md5(File file) throws Exception
+    {
+        byte []digest=MessageDigest.getInstance("MD5").digest(Files.readAllBytes(file.toPath()));
+        return String.format("%032x",new BigInteger(1,digest));
+    }
+
+    static String data(String name) throws Exception
+    {
+        return new File(ExactOutputTest.class.getResource("data/"+name).toURI()).getPath();
+    }
+}
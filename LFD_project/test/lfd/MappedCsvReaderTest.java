@@ -0,0 +1,147 @@
+package lfd;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Random;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ * The columns of MappedCsvReader have to be the same however the file is cut
+ * into chunks, and the values the ones readFileAs2DArray and
+ * Double.parseDouble give.
+ */
+public class MappedCsvReaderTest
+{
+    private static final String []NUMBERS={"0","-0","+1","007",".5","5.","1e3","-2.5E-3","0.30000000000000004",
+        "123456789012345678901234","1.7976931348623157E308","4.9E-324","1e-400","3.14159265358979323846",
+        "?","NaN","Infinity","-12.340","1E22","1E23","9007199254740993"};
+
+    @Rule
+    public TemporaryFolder tmp=new TemporaryFolder();
+
+    /*
+     * lines with mixed delimiters and line ends
+     *
+     * @param blankLines blank lines in between, which readFileAs2DArray does
+     * not skip
+     */
+    private File write(int rows, long seed, boolean blankLines) throws IOException
+    {
+        File file=tmp.newFile();
+        Random random=new Random(seed);
+        String []delimiters={",",", ","\t"," ,  "};
+        String []ends={"\n","\r\n","\r","\n\n","\r\n\r\n"};
+        int noOfEnds=blankLines?ends.length:3;
+        try(Writer out=new FileWriter(file))
+        {
+            for(int i=0;i<rows;i++)
+            {
+                out.write(NUMBERS[random.nextInt(NUMBERS.length)]);
+                out.write(delimiters[random.nextInt(delimiters.length)]);
+                out.write("c"+random.nextInt(i/10+1));
+                out.write(delimiters[random.nextInt(delimiters.length)]);
+                out.write(random.nextInt(20)==0?"?":Double.toString(random.nextGaussian()));
+                if(random.nextBoolean())out.write(",");
+                out.write(ends[random.nextInt(noOfEnds)]);
+            }
+        }
+        return file;
+    }
+
+    private static ColumnarData read(File file, boolean []projection, int threads, long chunkSize) throws IOException
+    {
+        MappedCsvReader reader=new MappedCsvReader(new boolean[]{true,false,true},projection,threads);
+        reader.setChunkSize(chunkSize);
+        return reader.read(file);
+    }
+
+    private static void assertSameColumns(ColumnarData expected, ColumnarData data)
+    {
+        assertEquals(expected.noOfRecords,data.noOfRecords);
+        for(int a:new int[]{0,2})
+        {
+            assertEquals(expected.numColumns[a].length,data.numColumns[a].length);
+            for(int i=0;i<expected.noOfRecords;i++)
+            {
+                assertEquals(Double.doubleToLongBits(expected.numColumns[a][i]),Double.doubleToLongBits(data.numColumns[a][i]));
+            }
+        }
+        assertArrayEquals(expected.catCodes[1],data.catCodes[1]);
+        assertArrayEquals(expected.domainValues[1],data.domainValues[1]);
+    }
+
+    @Test
+    public void chunksGiveTheSameColumns() throws Exception
+    {
+        File file=write(2000,1,true);
+        ColumnarData whole=read(file,null,1,0);
+        assertEquals(2000,whole.noOfRecords);
+        for(int threads:new int[]{1,3})
+        {
+            for(long chunkSize:new long[]{1,64,4096})
+            {
+                assertSameColumns(whole,read(file,null,threads,chunkSize));
+                //the categorical column parsed later, from the chunks
+                ColumnarData data=read(file,new boolean[]{true,false,true},threads,chunkSize);
+                assertNull(data.catCodes[1]);
+                data.materialize(new int[]{1});
+                assertSameColumns(whole,data);
+            }
+        }
+    }
+
+    @Test
+    public void valuesOfReadFileAs2DArray() throws Exception
+    {
+        File file=write(2000,2,false);
+        String [][]records=new FileManager().readFileAs2DArray(file);
+        ColumnarData data=read(file,null,2,100);
+        assertEquals(records.length,data.noOfRecords);
+        for(int i=0;i<records.length;i++)
+        {
+            for(int a:new int[]{0,2})
+            {
+                String v=records[i][a];
+                double expected=LFD.isMissing(v)==1?Double.NaN:Double.parseDouble(v);
+                assertEquals(v,Double.doubleToLongBits(expected),Double.doubleToLongBits(data.numColumns[a][i]));
+            }
+            int code=data.catCodes[1][i];
+            assertEquals(records[i][1],data.domainValues[1][code]);
+        }
+        for(long chunkSize:new long[]{0,7})
+        {
+            MappedCsvReader reader=new MappedCsvReader(null,null,2);
+            reader.setChunkSize(chunkSize);
+            ColumnarData all=reader.read(file);
+            for(int i=0;i<records.length;i++)
+            {
+                for(int a=0;a<3;a++)
+                {
+                    assertEquals(records[i][a],all.domainValues[a][all.catCodes[a][i]]);
+                }
+            }
+        }
+        String [][]same=MappedCsvReader.readRecords(file,3);
+        assertEquals(records.length,same.length);
+        for(int i=0;i<records.length;i++)
+        {
+            assertArrayEquals(records[i],same[i]);
+        }
+    }
+
+    @Test(expected=IOException.class)
+    public void shortLine() throws Exception
+    {
+        File file=tmp.newFile();
+        try(Writer out=new FileWriter(file))
+        {
+            out.write("1,a,2\n3,b\n");
+        }
+        read(file,null,1,0);
+    }
+}
@@ -0,0 +1,81 @@
+package lfd;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * The ranking of the attributes by their correlation ratio, which has to keep
+ * the order of tied values of the original exchange sort.
+ */
+public class RankTest
+{
+    /*
+     * the ranking of the original implementation
+     */
+    private static void exchangeSort(double []Ra, int []nAttrs, int nA)
+    {
+        for(int i=0; i<nA-1;i++)
+        {
+            for(int j=i+1; j<nA;j++)
+            {
+                if(Ra[j]>Ra[i])
+                {
+                    double tmp=Ra[j];
+                    Ra[j]=Ra[i];
+                    Ra[i]=tmp;
+                    int tmpA=nAttrs[j];
+                    nAttrs[j]=nAttrs[i];
+                    nAttrs[i]=tmpA;
+                }
+            }
+        }
+    }
+
+    private static void assertSameRanking(double []Ra)
+    {
+        int []attrs=new int[Ra.length];
+        for(int i=0;i<attrs.length;i++)
+        {
+            attrs[i]=10+i;
+        }
+        double []expectedR=Ra.clone();
+        int []expectedA=attrs.clone();
+        exchangeSort(expectedR,expectedA,Ra.length);
+        double []R=Ra.clone();
+        LFD.rankNAttributes(R,attrs,Ra.length);
+        assertArrayEquals(Arrays.toString(Ra),expectedA,attrs);
+        assertArrayEquals(expectedR,R,0.0);
+    }
+
+    @Test
+    public void tiedValues()
+    {
+        double []R={2,2,3};
+        int []attrs={0,1,2};
+        LFD.rankNAttributes(R,attrs,3);
+        //the exchange sort swaps the first 2 with the 3, so the tie is reversed
+        assertArrayEquals(new int[]{2,1,0},attrs);
+        assertSameRanking(new double[]{0.5,0.5,0.5,0.5});
+        assertSameRanking(new double[]{0.1,0.7,0.1,0.7,0.3,0.1});
+        assertSameRanking(new double[]{0.0,Double.NaN,0.4,0.0,Double.NaN,0.4});
+    }
+
+    @Test
+    public void randomValues()
+    {
+        Random random=new Random(1);
+        for(int t=0;t<2000;t++)
+        {
+            int n=1+random.nextInt(40);
+            int levels=1+random.nextInt(n+5);//few levels->many ties
+            double []Ra=new double[n];
+            for(int i=0;i<n;i++)
+            {
+                Ra[i]=random.nextInt(levels)/(double)levels;
+            }
+            assertSameRanking(Ra);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package lfd;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ * The sample and the validation slice of setSampling: exact sizes, disjoint,
+ * in file order, and in proportion to the classes when stratified.
+ */
+public class SamplingTest
+{
+    private static final String [][]ATTR_INFO={{"1","0","2"},{"N","C","Class"}};
+
+    @Rule
+    public TemporaryFolder tmp=new TemporaryFolder();
+
+    /*
+     * records of classes of very different sizes
+     */
+    private static String [][]records(int n, long seed)
+    {
+        Random random=new Random(seed);
+        String [][]records=new String[n][];
+        for(int i=0;i<n;i++)
+        {
+            double u=random.nextDouble();
+            String c=u<0.02?"rare":u<0.3?"mid":"big";
+            records[i]=new String[]{Integer.toString(i),"v"+random.nextInt(3),c};
+        }
+        return records;
+    }
+
+    private static void assertDisjoint(int [][]rows, int n, int sampleSize)
+    {
+        assertEquals(sampleSize,rows[0].length);
+        assertEquals(Math.min(sampleSize,n-sampleSize),rows[1].length);
+        boolean []taken=new boolean[n];
+        for(int []part:rows)
+        {
+            for(int i=0;i<part.length;i++)
+            {
+                assertTrue(part[i]>=0 && part[i]<n);
+                if(i>0)assertTrue(part[i]>part[i-1]);
+                assertFalse("row "+part[i]+" is in the sample and the validation slice",taken[part[i]]);
+                taken[part[i]]=true;
+            }
+        }
+    }
+
+    private static Map<String,Integer> classSizes(String [][]records, int []rows)
+    {
+        Map<String,Integer> sizes=new HashMap<>();
+        for(int r:rows)
+        {
+            sizes.merge(records[r][2],1,Integer::sum);
+        }
+        return sizes;
+    }
+
+    @Test
+    public void disjointParts()
+    {
+        for(boolean stratified:new boolean[]{false,true})
+        {
+            for(int n:new int[]{2,3,10,101,1000})
+            {
+                String [][]records=records(n,n);
+                for(int sampleSize:new int[]{1,n/3,n/2,n/2+1,n-1})
+                {
+                    if(sampleSize<1 || sampleSize>=n)continue;
+                    LFD lfd=new LFD();
+                    lfd.setSampling(sampleSize,stratified);
+                    assertDisjoint(lfd.sampleRows(records,ATTR_INFO),n,sampleSize);
+                }
+            }
+        }
+    }
+
+    /*
+     * a stratum whose share of the sample and the slice is rounded up both
+     * times, e.g. one record of a class
+     */
+    @Test
+    public void smallStrata()
+    {
+        String [][]records=new String[9][];
+        for(int i=0;i<9;i++)
+        {
+            records[i]=new String[]{Integer.toString(i),"v",i==4?"one":i%2==0?"a":"b"};
+        }
+        for(int sampleSize=1;sampleSize<9;sampleSize++)
+        {
+            LFD lfd=new LFD();
+            lfd.setSampling(sampleSize,true);
+            assertDisjoint(lfd.sampleRows(records,ATTR_INFO),9,sampleSize);
+        }
+    }
+
+    @Test
+    public void stratifiedShares()
+    {
+        int n=10000, sampleSize=1000;
+        String [][]records=records(n,11);
+        LFD lfd=new LFD();
+        lfd.setSampling(sampleSize,true);
+        int [][]rows=lfd.sampleRows(records,ATTR_INFO);
+        int []all=new int[n];
+        for(int i=0;i<n;i++)
+        {
+            all[i]=i;
+        }
+        Map<String,Integer> sizes=classSizes(records,all);
+        for(int p=0;p<2;p++)
+        {
+            Map<String,Integer> shares=classSizes(records,rows[p]);
+            for(Map.Entry<String,Integer> e:sizes.entrySet())
+            {
+                double exact=(double)e.getValue()*sampleSize/n;
+                assertEquals(e.getKey(),exact,shares.getOrDefault(e.getKey(),0),1.0);
+            }
+        }
+        //the same seed draws the same rows
+        LFD again=new LFD();
+        again.setSampling(sampleSize,true);
+        int [][]same=again.sampleRows(records,ATTR_INFO);
+        assertTrue(Arrays.equals(rows[0],same[0]) && Arrays.equals(rows[1],same[1]));
+    }
+
+    /*
+     * runLFD fits the sample from the columns of the file, with the cut points
+     * and objectives of a fit from the records as strings
+     */
+    @Test
+    public void sampleOfTheColumns() throws Exception
+    {
+        for(String name:new String[]{"d4","d8"})
+        {
+            File attr=new File(ExactOutputTest.data(name+"_attr.txt")), data=new File(ExactOutputTest.data(name+"_data.txt"));
+            for(boolean stratified:new boolean[]{false,true})
+            {
+                LFD columns=new LFD();
+                columns.setSampling(150,stratified);
+                columns.runLFD(attr.getPath(),data.getPath(),tmp.newFile().getPath());
+                LFD records=new LFD();
+                records.setSampling(150,stratified);
+                records.runDiscretization(MappedCsvReader.readRecords(data,1),MappedCsvReader.readRecords(attr,1),0.2);
+                assertEquals(name,records.getObjectiveReport(),columns.getObjectiveReport());
+                String []types=MappedCsvReader.readRecords(attr,1)[0];
+                for(int a=0;a<types.length;a++)
+                {
+                    //the columnar run parses a categorical column only when it is used
+                    if(types[a].equals("1"))assertEquals(name,records.getIntervals()[a],columns.getIntervals()[a]);
+                }
+            }
+        }
+    }
+}
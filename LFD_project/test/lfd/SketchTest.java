@@ -0,0 +1,132 @@
+package lfd;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * The error bounds of the sketches behind setSketch: the rank error of the KLL
+ * quantiles, the count error of the Misra-Gries summary and the relative
+ * error of the HyperLogLog count.
+ */
+public class SketchTest
+{
+    /*
+     * no. of values below v in the sorted stream
+     */
+    private static int rank(double []sorted, double v)
+    {
+        int lo=0, hi=sorted.length;
+        while(lo<hi)
+        {
+            int mid=(lo+hi)>>>1;
+            if(sorted[mid]<v)lo=mid+1;else hi=mid;
+        }
+        return lo;
+    }
+
+    @Test
+    public void quantileRankError()
+    {
+        Random random=new Random(3);
+        for(int k:new int[]{64,200,1000})
+        {
+            int n=200000;
+            double []stream=new double[n];
+            QuantileSketch sketch=new QuantileSketch(k);
+            for(int i=0;i<n;i++)
+            {
+                stream[i]=i%7==0?random.nextInt(100):random.nextGaussian()*1000;
+                sketch.update(stream[i]);
+            }
+            sketch.update(Double.NaN);
+            assertEquals(n,sketch.count());
+            double []sorted=stream.clone();
+            Arrays.sort(sorted);
+            int m=50;
+            double []q=sketch.quantiles(m);
+            for(int i=1;i<q.length;i++)
+            {
+                assertTrue(q[i]>q[i-1]);
+            }
+            //every rank i*n/m has a quantile of the stream whose rank is within about 2n/k of it
+            double bound=3.0*n/k;
+            int found=0;
+            for(int i=1;i<=m;i++)
+            {
+                double target=(double)i*n/m;
+                for(double v:q)
+                {
+                    int lo=rank(sorted,v), hi=rank(sorted,Math.nextUp(v));
+                    if(lo-bound<=target && target<=hi+bound)
+                    {
+                        found++;
+                        break;
+                    }
+                }
+            }
+            assertEquals("k="+k,m,found);
+            for(double v:q)
+            {
+                assertTrue(Arrays.binarySearch(sorted,v)>=0);
+            }
+        }
+    }
+
+    @Test
+    public void heavyHitterCountError()
+    {
+        Random random=new Random(5);
+        for(int capacity:new int[]{10,50,200})
+        {
+            int n=100000;
+            HeavyHitters summary=new HeavyHitters(capacity);
+            Map<Double,Integer> counts=new HashMap<>();
+            for(int i=0;i<n;i++)
+            {
+                //a few frequent values in a long tail
+                double v=random.nextInt(4)==0?random.nextInt(5):random.nextInt(20000);
+                summary.add(v);
+                counts.merge(v,1,Integer::sum);
+            }
+            summary.add(Double.NaN);
+            long bound=n/(capacity+1);
+            assertTrue(summary.maxError()<=bound);
+            for(Map.Entry<Double,Integer> e:counts.entrySet())
+            {
+                int c=summary.count(e.getKey());
+                assertTrue(c<=e.getValue());
+                assertTrue("capacity="+capacity+", value="+e.getKey(),e.getValue()<=c+summary.maxError());
+                if(e.getValue()>bound)assertTrue(c>0);
+            }
+        }
+        HeavyHitters zeros=new HeavyHitters(4);
+        zeros.add(0.0);
+        zeros.add(-0.0);
+        assertEquals(2,zeros.count(0.0));
+    }
+
+    @Test
+    public void distinctCountError()
+    {
+        Random random=new Random(7);
+        for(int d:new int[]{1,10,1000,10000,100000,1000000})
+        {
+            DistinctCounter counter=new DistinctCounter();
+            HashSet<Double> values=new HashSet<>();
+            while(values.size()<d)
+            {
+                double v=Math.round(random.nextGaussian()*1e7)/100.0;
+                values.add(v);
+                counter.add(v);
+                counter.add(v);
+            }
+            //0.8% standard error, 4 of them
+            assertEquals("d="+d,d,counter.estimate(),Math.max(0.032*d,0.5));
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package lfd;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * The pipeline has to write the mapped records in input order, whatever
+ * worker maps a batch and however long it takes.
+ */
+public class TransformPipelineTest
+{
+    private static String run(int workers, int lines) throws IOException
+    {
+        StringBuilder in=new StringBuilder();
+        for(int i=0;i<lines;i++)
+        {
+            in.append(i%10==3?"":Integer.toString(i)).append('\n');
+        }
+        StringWriter out=new StringWriter();
+        long written=new TransformPipeline(workers,line -> {
+            if(line.isEmpty())return null;
+            int i=Integer.parseInt(line);
+            if(i%5==0)Thread.yield();
+            return "r"+i;
+        }).run(new BufferedReader(new StringReader(in.toString())),out);
+        assertEquals(lines-lines/10-(lines%10>3?1:0),written);
+        return out.toString();
+    }
+
+    @Test
+    public void inputOrder() throws Exception
+    {
+        int lines=50000;//more than a dozen batches
+        StringBuilder expected=new StringBuilder();
+        for(int i=0;i<lines;i++)
+        {
+            if(i%10==3)continue;
+            if(expected.length()>0)expected.append('\n');
+            expected.append('r').append(i);
+        }
+        for(int workers:new int[]{1,2,7})
+        {
+            assertEquals(expected.toString(),run(workers,lines));
+        }
+        assertEquals("",run(3,0));
+        assertEquals("r0\nr1\nr2",run(3,3));
+    }
+
+    @Test(expected=IOException.class)
+    public void mapperFailure() throws Exception
+    {
+        new TransformPipeline(2,line -> {
+            throw new IllegalArgumentException(line);
+        }).run(new BufferedReader(new StringReader("a\nb\n")),new StringWriter());
+    }
+}
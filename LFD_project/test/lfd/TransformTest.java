@@ -0,0 +1,78 @@
+package lfd;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ * Records given to transform after the fit: values outside the fitted range
+ * and records of the wrong length.
+ */
+public class TransformTest
+{
+    @Rule
+    public TemporaryFolder tmp=new TemporaryFolder();
+
+    private LFD fit() throws Exception
+    {
+        LFD lfd=new LFD();
+        lfd.runLFD(ExactOutputTest.data("d1_attr.txt"),ExactOutputTest.data("d1_data.txt"),tmp.newFile().getPath());
+        return lfd;
+    }
+
+    private File write(String records) throws IOException
+    {
+        File file=tmp.newFile();
+        try(Writer out=new FileWriter(file))
+        {
+            out.write(records);
+        }
+        return file;
+    }
+
+    /*
+     * the last interval of a numerical column, the largest one in the output
+     * of the fit
+     */
+    private static int lastInterval(int a) throws Exception
+    {
+        int last=0;
+        for(String line:Files.readAllLines(new File(ExactOutputTest.data("d1_ref.txt")).toPath()))
+        {
+            String v=line.split(", ")[a];
+            if(LFD.isMissing(v)==0)last=Math.max(last,Integer.parseInt(v));
+        }
+        return last;
+    }
+
+    @Test
+    public void valuesOutsideTheFittedRange() throws Exception
+    {
+        LFD lfd=fit();
+        File out=tmp.newFile();
+        lfd.transform(write("-1e300,1e300,Infinity,v0,v2,v0\n1e300,-5,?,?,v1,v1\n").getPath(),out.getPath());
+        List<String> lines=Files.readAllLines(out.toPath());
+        assertEquals(2,lines.size());
+        assertEquals("0, "+lastInterval(1)+", "+lastInterval(2)+", v0, v2, v0, ",lines.get(0));
+        assertEquals(lastInterval(0)+", 0, ?, ?, v1, v1, ",lines.get(1));
+    }
+
+    @Test(expected=IOException.class)
+    public void longRecord() throws Exception
+    {
+        fit().writeDiscretized(write("1,4,49,v0,v0,v1\n1,4,49,v0,v0,v1,v2\n").getPath(),tmp.newFile().getPath());
+    }
+
+    @Test(expected=IOException.class)
+    public void shortRecord() throws Exception
+    {
+        fit().writeDiscretized(write("1,4,49,v0,v0\n").getPath(),tmp.newFile().getPath());
+    }
+}